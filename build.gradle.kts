@@ -12,6 +12,8 @@ repositories {
 
 dependencies {
     implementation("xerces:xercesImpl:2.12.2")
+
+    testImplementation("junit:junit:4.13.2")
 }
 
 // Configure Gradle IntelliJ Plugin
@@ -29,6 +31,11 @@ tasks {
         options.encoding = "UTF-8"
     }
 
+    test {
+        // Os testes do diagrama montam o painel Swing sem tela
+        systemProperty("java.awt.headless", "true")
+    }
+
     patchPluginXml {
         sinceBuild.set("231")
         untilBuild.set("252.*")
@@ -0,0 +1,210 @@
+package br.com.clmDev.xsd_view;
+
+import br.com.clmDev.xsd_view.model.XsdStructure;
+import br.com.clmDev.xsd_view.parser.XsdIncrementalParser;
+import br.com.clmDev.xsd_view.parser.XsdParser;
+import br.com.clmDev.xsd_view.parser.XsdPsiBuilder;
+import br.com.clmDev.xsd_view.ui.XsdVisualizerPanel;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.ui.content.Content;
+import com.intellij.util.Alarm;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Mantém o painel sincronizado com o documento do editor enquanto a visualização está aberta.
+ * Cada edição refaz apenas a declaração de topo atingida; mudanças estruturais
+ * disparam um parse completo em segundo plano. Os dois passam pelo XsdParser da aplicação.
+ */
+public class XsdDocumentUpdater implements DocumentListener, Disposable {
+    private static final int REFRESH_DELAY_MS = 150;
+
+    private final Project project;
+    private final VirtualFile file;
+    private final Document document;
+    private final XsdVisualizerPanel panel;
+    private final XsdParser parser;
+    private final Alarm alarm;
+    private XsdIncrementalParser incrementalParser;
+    private volatile boolean disposed;
+
+    private XsdDocumentUpdater(Project project, VirtualFile file, Document document, XsdStructure structure,
+                               XsdVisualizerPanel panel) {
+        this.project = project;
+        this.file = file;
+        this.document = document;
+        this.panel = panel;
+        this.parser = XsdParser.getInstance();
+        this.alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+        this.incrementalParser = new XsdIncrementalParser(structure, document.getImmutableCharSequence());
+    }
+
+    /**
+     * Resultado de um parse completo e a versão do documento de onde ele veio.
+     */
+    private static final class FullReparse {
+        final long stamp;
+        final XsdIncrementalParser parser;
+
+        FullReparse(long stamp, XsdIncrementalParser parser) {
+            this.stamp = stamp;
+            this.parser = parser;
+        }
+    }
+
+    /**
+     * Passa a acompanhar as edições do arquivo até o conteúdo da tool window ser fechado.
+     * Deve ser chamado na EDT.
+     * @param documentStamp Versão do documento de onde a estrutura veio, ou -1 se ela veio do disco
+     */
+    public static void attach(Project project, VirtualFile file, XsdStructure structure, long documentStamp,
+                              XsdVisualizerPanel panel, Content content) {
+        FileDocumentManager documentManager = FileDocumentManager.getInstance();
+        Document document = documentManager.getDocument(file);
+        if (document == null) {
+            return;
+        }
+
+        XsdDocumentUpdater updater = new XsdDocumentUpdater(project, file, document, structure, panel);
+        content.setDisposer(updater);
+        document.addDocumentListener(updater, updater);
+
+        // Sincronizar já se o documento mudou desde o parse ou, vindo do disco, se tem alterações não salvas
+        boolean stale = documentStamp >= 0
+                ? document.getModificationStamp() != documentStamp
+                : documentManager.isDocumentUnsaved(document);
+        if (stale || updater.incrementalParser.needsFullReparse()) {
+            updater.startFullReparse();
+        }
+    }
+
+    @Override
+    public void documentChanged(@NotNull DocumentEvent event) {
+        incrementalParser.documentChanged(event.getOffset(), event.getOldLength(), event.getNewLength());
+        scheduleRefresh();
+    }
+
+    private void scheduleRefresh() {
+        alarm.cancelAllRequests();
+        alarm.addRequest(this::refresh, REFRESH_DELAY_MS);
+    }
+
+    /**
+     * Copia os trechos marcados na EDT, faz o parse deles em segundo plano e só aplica o resultado
+     * na EDT se o documento não mudou no meio; caso contrário a edição seguinte já agendou outro refresh.
+     */
+    private void refresh() {
+        if (disposed) {
+            return;
+        }
+        XsdIncrementalParser incremental = incrementalParser;
+        XsdIncrementalParser.DirtySlots slots = incremental.collectDirty();
+        if (slots == null) {
+            startFullReparse();
+            return;
+        }
+        if (slots.isEmpty()) {
+            return;
+        }
+        CharSequence text = document.getImmutableCharSequence();
+        long stamp = document.getModificationStamp();
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            slots.parse(parser, text);
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (disposed || incrementalParser != incremental || document.getModificationStamp() != stamp) {
+                    return;
+                }
+                List<XsdIncrementalParser.Replacement> replacements = incremental.applyDirty(slots);
+                if (replacements == null) {
+                    startFullReparse();
+                } else if (!replacements.isEmpty()) {
+                    panel.applyReplacements(replacements);
+                }
+            });
+        });
+    }
+
+    /**
+     * Refaz a estrutura inteira numa read action não bloqueante, com o documento já commitado.
+     * Uma escrita no meio reinicia a leitura e um novo pedido cancela o anterior (coalesceBy),
+     * então só o resultado da versão mais recente do documento chega ao painel.
+     */
+    private void startFullReparse() {
+        ReadAction.nonBlocking(this::reparseFull)
+                .withDocumentsCommitted(project)
+                .coalesceBy(this)
+                .expireWith(this)
+                .finishOnUiThread(ModalityState.defaultModalityState(), this::applyFullReparse)
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    /**
+     * Monta a estrutura da PSI do arquivo, como na abertura da visualização, ou faz o parse do texto
+     * com o motor e os limites do XsdParser.
+     * @return Novo parser incremental, ou null se o XSD está mal formado
+     */
+    private FullReparse reparseFull() {
+        long stamp = document.getModificationStamp();
+        CharSequence text = document.getImmutableCharSequence();
+        XsdStructure structure = buildFromPsi();
+        if (structure == null) {
+            try {
+                structure = parser.parseXsd(text, ProgressManager.getInstance().getProgressIndicator());
+            } catch (ProcessCanceledException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                // XSD mal formado durante a edição: manter a última visualização válida
+                return null;
+            }
+        }
+        return new FullReparse(stamp, new XsdIncrementalParser(structure, text));
+    }
+
+    /**
+     * A PSI tolera erros de sintaxe e entregaria uma estrutura pela metade; com erros o texto
+     * passa pelo parser, que rejeita o XSD mal formado.
+     * @return Estrutura montada da PSI, ou null para fazer o parse do texto
+     */
+    private XsdStructure buildFromPsi() {
+        if (!XsdPsiBuilder.isEnabled()) {
+            return null;
+        }
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+        if (!(psiFile instanceof XmlFile) || PsiTreeUtil.hasErrorElements(psiFile)) {
+            return null;
+        }
+        return XsdPsiBuilder.build((XmlFile) psiFile, parser.getLimits());
+    }
+
+    private void applyFullReparse(FullReparse reparsed) {
+        if (reparsed == null || disposed || document.getModificationStamp() != reparsed.stamp) {
+            return;
+        }
+        // O texto do editor não traz os arquivos incluídos: manter os tipos já resolvidos deles
+        reparsed.parser.getStructure().inheritExternalTypes(incrementalParser.getStructure());
+        incrementalParser = reparsed.parser;
+        panel.setStructure(reparsed.parser.getStructure());
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+    }
+}
\ No newline at end of file
@@ -1,16 +1,34 @@
 package br.com.clmDev.xsd_view;
 
+import br.com.clmDev.xsd_view.index.XsdProjectSchemaIndex;
 import br.com.clmDev.xsd_view.model.XsdStructure;
+import br.com.clmDev.xsd_view.parser.XsdModuleCache;
+import br.com.clmDev.xsd_view.parser.XsdParseCache;
 import br.com.clmDev.xsd_view.parser.XsdParser;
+import br.com.clmDev.xsd_view.parser.XsdPsiBuilder;
+import br.com.clmDev.xsd_view.parser.XsdSchemaLoader;
 import br.com.clmDev.xsd_view.ui.XsdVisualizerPanel;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.xml.XmlFile;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
 import org.jetbrains.annotations.NotNull;
@@ -21,6 +39,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 public class XsdVisualizerAction extends AnAction {
+    private static final Key<ParseTask> RUNNING_PARSE = Key.create("xsdview.runningParse");
 
     @Override
     public void actionPerformed(@NotNull AnActionEvent e) {
@@ -38,26 +57,165 @@ public class XsdVisualizerAction extends AnAction {
             return;
         }
 
-        try {
-            // Parse do arquivo XSD
-            XsdParser parser = new XsdParser();
-            XsdStructure structure = parser.parseXsd(file);
+        parseInBackground(project, file);
+    }
+
+    /**
+     * Faz o parse fora da EDT com progresso e cancelamento. Um novo parse no mesmo projeto
+     * cancela o anterior; o painel só é criado na EDT quando a estrutura estiver pronta.
+     */
+    private void parseInBackground(Project project, VirtualFile file) {
+        ParseTask previous = project.getUserData(RUNNING_PARSE);
+        if (previous != null) {
+            previous.cancel();
+        }
+
+        ParseTask task = new ParseTask(project, file);
+        project.putUserData(RUNNING_PARSE, task);
+        task.queue();
+    }
+
+    private class ParseTask extends Task.Backgroundable {
+        private final Project project;
+        private final VirtualFile file;
+        private volatile boolean canceled;
+        private volatile ProgressIndicator indicator;
+        private XsdSchemaLoader loader;
+        private XsdStructure structure;
+        // Versão do documento de onde a estrutura veio, ou -1 se veio do disco
+        private long documentStamp = -1;
+
+        ParseTask(Project project, VirtualFile file) {
+            super(project, "Processando XSD " + file.getName(), true);
+            this.project = project;
+            this.file = file;
+        }
+
+        void cancel() {
+            canceled = true;
+            ProgressIndicator current = indicator;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        @Override
+        public void run(@NotNull ProgressIndicator indicator) {
+            this.indicator = indicator;
+            if (canceled) {
+                indicator.cancel();
+            }
+            indicator.checkCanceled();
+            indicator.setText("Lendo " + file.getName());
+
+            // Parse do arquivo XSD e dos schemas incluídos/importados
+            // (reaproveita o cache em disco quando os arquivos não mudaram)
+            loader = new XsdSchemaLoader(XsdParser.getInstance(), XsdParseCache.getInstance(), XsdModuleCache.getInstance(),
+                    new XsdProjectSchemaIndex(project));
+            XsdStructure fromPsi = buildFromPsi(indicator);
+            if (fromPsi != null) {
+                structure = loader.loadReferences(file, fromPsi, indicator);
+            } else {
+                structure = loader.load(file, unsavedText(), indicator);
+            }
+            indicator.checkCanceled();
+        }
+
+        /**
+         * Arquivo aberto no editor: a IDE já tem a árvore PSI dele, então a estrutura é montada
+         * a partir dela numa read action não bloqueante, sem ler nem processar os bytes de novo.
+         * A read action recomeça se houver escrita no meio e é abandonada se o arquivo mudar no disco.
+         * @return Estrutura montada da PSI, ou null para fazer o parse do arquivo
+         */
+        private XsdStructure buildFromPsi(ProgressIndicator indicator) {
+            if (!XsdPsiBuilder.isEnabled() || !FileEditorManager.getInstance(project).isFileOpen(file)) {
+                return null;
+            }
+            long fileStamp = file.getModificationStamp();
+            try {
+                return ReadAction.nonBlocking(() -> {
+                            PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+                            if (!(psiFile instanceof XmlFile)) {
+                                return null;
+                            }
+                            // Com os documentos sincronizados, a PSI corresponde a esta versão do documento
+                            Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+                            documentStamp = document != null ? document.getModificationStamp() : -1;
+                            return XsdPsiBuilder.build((XmlFile) psiFile);
+                        })
+                        .withDocumentsCommitted(project)
+                        .expireWhen(() -> !file.isValid() || file.getModificationStamp() != fileStamp)
+                        .wrapProgress(indicator)
+                        .executeSynchronously();
+            } catch (ProcessCanceledException e) {
+                if (indicator.isCanceled()) {
+                    throw e;
+                }
+                // Arquivo mudou durante a leitura da PSI: fazer o parse do conteúdo atual
+                documentStamp = -1;
+                return null;
+            }
+        }
 
-            if (structure.isEmpty()) {
+        /**
+         * Com alterações não salvas no editor, o parse usa o texto do documento em vez do disco,
+         * para mostrar o que o usuário está vendo sem salvar nem ler o arquivo de novo.
+         * @return Texto imutável do documento ou null se o disco está atualizado
+         */
+        private CharSequence unsavedText() {
+            FileDocumentManager documentManager = FileDocumentManager.getInstance();
+            Document document = documentManager.getCachedDocument(file);
+            if (document == null || !documentManager.isDocumentUnsaved(document)) {
+                return null;
+            }
+            // Carimbo antes do texto: se houver edição no meio, o updater apenas refaz o parse
+            documentStamp = document.getModificationStamp();
+            return document.getImmutableCharSequence();
+        }
+
+        @Override
+        public void onSuccess() {
+            if (canceled || project.isDisposed() || structure == null) {
+                return;
+            }
+
+            // Vazia por ter atingido um limite (ex.: arquivo grande demais para o DOM): o painel exibe o aviso
+            if (structure.isEmpty() && !structure.isTruncated()) {
                 Messages.showInfoMessage(project,
                         "O arquivo XSD não contém elementos ou tipos complexos para visualizar.",
                         "Arquivo Vazio");
                 return;
             }
 
-            // Mostrar visualização
-            showVisualization(project, file, structure);
+            // Mostrar visualização; os módulos compartilhados ficam presos ao conteúdo da tool window
+            Content content = showVisualization(project, file, structure, documentStamp, loader);
+            if (content != null) {
+                Disposer.register(content, loader);
+                loader = null;
+            }
+        }
 
-        } catch (Exception ex) {
+        @Override
+        public void onThrowable(@NotNull Throwable error) {
+            if (canceled) {
+                return;
+            }
             Messages.showErrorDialog(project,
-                    "Erro ao processar o arquivo XSD:\n" + ex.getMessage(),
+                    "Erro ao processar o arquivo XSD:\n" + error.getMessage(),
                     "Erro no Parser");
         }
+
+        @Override
+        public void onFinished() {
+            // Parse cancelado, com erro ou sem visualização: liberar os módulos compartilhados
+            if (loader != null) {
+                loader.dispose();
+                loader = null;
+            }
+            if (project.getUserData(RUNNING_PARSE) == this) {
+                project.putUserData(RUNNING_PARSE, null);
+            }
+        }
     }
 
     @Override
@@ -66,7 +224,8 @@ public class XsdVisualizerAction extends AnAction {
         e.getPresentation().setEnabledAndVisible(true);
     }
 
-    private void showVisualization(Project project, VirtualFile file, XsdStructure structure) {
+    private Content showVisualization(Project project, VirtualFile file, XsdStructure structure, long documentStamp,
+                                      XsdSchemaLoader loader) {
         ToolWindowManager toolWindowManager = ToolWindowManager.getInstance(project);
         ToolWindow toolWindow = toolWindowManager.getToolWindow("XSD View");
 
@@ -75,11 +234,13 @@ public class XsdVisualizerAction extends AnAction {
                     "Tool Window 'XSD View' não encontrada. " +
                             "Verifique se o plugin foi instalado corretamente.",
                     "Erro de Configuração");
-            return;
+            return null;
         }
 
         // Criar painel de visualização
         XsdVisualizerPanel visualizerPanel = new XsdVisualizerPanel(structure);
+        // Tipos que o índice do projeto encontra em segundo plano passam a aparecer sem bloquear a expansão
+        loader.setTypesFoundListener(() -> ApplicationManager.getApplication().invokeLater(visualizerPanel::typesFound));
 
         // Criar painel principal com toolbar e visualizador
         JPanel mainPanel = new JPanel(new BorderLayout());
@@ -110,8 +271,12 @@ public class XsdVisualizerAction extends AnAction {
         toolWindow.getContentManager().removeAllContents(true);
         toolWindow.getContentManager().addContent(content);
 
+        // Atualizar a visualização conforme o arquivo é editado
+        XsdDocumentUpdater.attach(project, file, structure, documentStamp, visualizerPanel, content);
+
         // Mostrar a tool window
         toolWindow.show();
+        return content;
     }
 
     private JToolBar createToolBar(XsdVisualizerPanel visualizerPanel) {
@@ -213,6 +378,13 @@ public class XsdVisualizerAction extends AnAction {
             statusPanel.add(elementsLabel);
         }
 
+        if (structure.isTruncated()) {
+            JLabel truncationLabel = new JLabel(" | " + structure.getTruncationMessage());
+            truncationLabel.setFont(truncationLabel.getFont().deriveFont(Font.BOLD, 11f));
+            truncationLabel.setForeground(new Color(200, 0, 0));
+            statusPanel.add(truncationLabel);
+        }
+
         return statusPanel;
     }
 
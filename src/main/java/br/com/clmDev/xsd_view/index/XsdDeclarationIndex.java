@@ -0,0 +1,79 @@
+package br.com.clmDev.xsd_view.index;
+
+import br.com.clmDev.xsd_view.parser.XsdTopLevelScanner;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.ScalarIndexExtension;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Índice dos nomes de elementos e tipos complexos de topo de todos os arquivos .xsd do projeto.
+ * Responde "quais schemas declaram TNFe" sem processar nenhum arquivo.
+ * Os nomes vêm da varredura léxica das declarações de topo, sem o parse completo feito pelo índice de resumos.
+ */
+public class XsdDeclarationIndex extends ScalarIndexExtension<String> {
+    public static final ID<String, Void> NAME = ID.create("xsdview.declarations");
+
+    private static final int VERSION = 2;
+
+    /**
+     * Deve ser chamado numa read action, fora da indexação.
+     * @param project Projeto
+     * @param name Nome local do elemento ou tipo complexo (sem prefixo)
+     * @return Arquivos que declaram o nome no topo
+     */
+    public static Collection<VirtualFile> findSchemasDefining(Project project, String name) {
+        return FileBasedIndex.getInstance().getContainingFiles(NAME, name, GlobalSearchScope.allScope(project));
+    }
+
+    @NotNull
+    @Override
+    public ID<String, Void> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, Void, FileContent> getIndexer() {
+        return inputData -> {
+            Map<String, Void> names = new HashMap<>();
+            for (String name : XsdTopLevelScanner.declaredNames(inputData.getContentAsText())) {
+                names.put(name, null);
+            }
+            return names;
+        };
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return XsdSchemaSummaryIndex::isXsd;
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+}
\ No newline at end of file
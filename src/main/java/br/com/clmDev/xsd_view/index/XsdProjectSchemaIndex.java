@@ -0,0 +1,50 @@
+package br.com.clmDev.xsd_view.index;
+
+import br.com.clmDev.xsd_view.model.XsdSchemaSummary;
+import br.com.clmDev.xsd_view.parser.XsdSchemaIndex;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+/**
+ * XsdSchemaIndex sobre os índices de resumos e de declarações do projeto.
+ * As consultas rodam numa read action não bloqueante, que cede a vez a uma escrita pendente e recomeça depois dela;
+ * durante a indexação nada é respondido e o loader processa os arquivos.
+ * Na EDT nada é consultado: o loader faz as buscas nas suas threads, inclusive as pedidas pela expansão dos nós.
+ */
+public final class XsdProjectSchemaIndex implements XsdSchemaIndex {
+    private final Project project;
+
+    public XsdProjectSchemaIndex(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public XsdSchemaSummary getSummary(VirtualFile file) {
+        return query(() -> XsdSchemaSummaryIndex.getSummary(project, file), null);
+    }
+
+    @Override
+    public Collection<VirtualFile> findSchemasDefining(String name) {
+        return query(() -> XsdDeclarationIndex.findSchemasDefining(project, name), Collections.emptyList());
+    }
+
+    private <T> T query(Callable<T> query, T unavailable) {
+        if (ApplicationManager.getApplication().isDispatchThread() || project.isDisposed() || DumbService.isDumb(project)) {
+            return unavailable;
+        }
+        try {
+            return ReadAction.nonBlocking(query).expireWith(project).executeSynchronously();
+        } catch (IndexNotReadyException e) {
+            // A indexação começou depois da verificação
+            return unavailable;
+        }
+    }
+}
\ No newline at end of file
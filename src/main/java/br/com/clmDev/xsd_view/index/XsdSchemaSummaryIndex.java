@@ -0,0 +1,151 @@
+package br.com.clmDev.xsd_view.index;
+
+import br.com.clmDev.xsd_view.model.XsdSchemaReference;
+import br.com.clmDev.xsd_view.model.XsdSchemaSummary;
+import br.com.clmDev.xsd_view.parser.XsdTopLevelScanner;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.SingleEntryFileBasedIndexExtension;
+import com.intellij.util.indexing.SingleEntryIndexer;
+import com.intellij.util.io.DataExternalizer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Índice com o resumo (XsdSchemaSummary) de cada arquivo .xsd do projeto.
+ * A plataforma mantém o índice atualizado conforme os arquivos mudam; consultar o resumo
+ * não exige ler nem processar o arquivo. A indexação também não processa: o resumo vem da varredura
+ * léxica das declarações de topo, sem montar o modelo.
+ */
+public class XsdSchemaSummaryIndex extends SingleEntryFileBasedIndexExtension<XsdSchemaSummary> {
+    public static final ID<Integer, XsdSchemaSummary> NAME = ID.create("xsdview.schemaSummary");
+
+    private static final int VERSION = 2;
+
+    /**
+     * Deve ser chamado numa read action, fora da indexação.
+     * @param project Projeto
+     * @param file Arquivo XSD
+     * @return Resumo do arquivo, ou null se ele não está indexado ou não é um XSD válido
+     */
+    public static XsdSchemaSummary getSummary(Project project, VirtualFile file) {
+        Iterator<XsdSchemaSummary> values = FileBasedIndex.getInstance().getFileData(NAME, file, project).values().iterator();
+        return values.hasNext() ? values.next() : null;
+    }
+
+    /**
+     * Resume o conteúdo de um arquivo. Arquivos mal formados demais para a varredura (ex.: durante a edição)
+     * não geram resumo.
+     */
+    static XsdSchemaSummary summarize(CharSequence text) {
+        return XsdTopLevelScanner.summarize(text);
+    }
+
+    static boolean isXsd(VirtualFile file) {
+        return !file.isDirectory() && "xsd".equalsIgnoreCase(file.getExtension());
+    }
+
+    @NotNull
+    @Override
+    public ID<Integer, XsdSchemaSummary> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public SingleEntryIndexer<XsdSchemaSummary> getIndexer() {
+        return new SingleEntryIndexer<XsdSchemaSummary>(false) {
+            @Override
+            protected XsdSchemaSummary computeValue(@NotNull FileContent inputData) {
+                return summarize(inputData.getContentAsText());
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<XsdSchemaSummary> getValueExternalizer() {
+        return new SummaryExternalizer();
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return XsdSchemaSummaryIndex::isXsd;
+    }
+
+    private static final class SummaryExternalizer implements DataExternalizer<XsdSchemaSummary> {
+        @Override
+        public void save(@NotNull DataOutput out, XsdSchemaSummary summary) throws IOException {
+            writeNullable(out, summary.getTargetNamespace());
+            writeNames(out, summary.getElementNames());
+            writeNames(out, summary.getComplexTypeNames());
+            out.writeInt(summary.getReferences().size());
+            for (XsdSchemaReference reference : summary.getReferences()) {
+                out.writeByte(reference.getKind().ordinal());
+                writeNullable(out, reference.getSchemaLocation());
+                writeNullable(out, reference.getNamespace());
+            }
+            out.writeInt(summary.getNodeCount());
+        }
+
+        @Override
+        public XsdSchemaSummary read(@NotNull DataInput in) throws IOException {
+            String targetNamespace = readNullable(in);
+            List<String> elementNames = readNames(in);
+            List<String> complexTypeNames = readNames(in);
+            int referenceCount = in.readInt();
+            XsdSchemaReference.Kind[] kinds = XsdSchemaReference.Kind.values();
+            List<XsdSchemaReference> references = new ArrayList<>(referenceCount);
+            for (int i = 0; i < referenceCount; i++) {
+                int kind = in.readByte();
+                if (kind < 0 || kind >= kinds.length) {
+                    throw new IOException("Tipo de referência inválido no índice: " + kind);
+                }
+                references.add(new XsdSchemaReference(kinds[kind], readNullable(in), readNullable(in)));
+            }
+            return new XsdSchemaSummary(targetNamespace, elementNames, complexTypeNames, references, in.readInt());
+        }
+
+        private static void writeNames(DataOutput out, List<String> names) throws IOException {
+            out.writeInt(names.size());
+            for (String name : names) {
+                writeNullable(out, name);
+            }
+        }
+
+        private static List<String> readNames(DataInput in) throws IOException {
+            int count = in.readInt();
+            List<String> names = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                names.add(readNullable(in));
+            }
+            return names;
+        }
+
+        private static void writeNullable(DataOutput out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        private static String readNullable(DataInput in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    }
+}
\ No newline at end of file
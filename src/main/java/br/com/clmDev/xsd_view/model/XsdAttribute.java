@@ -10,7 +10,8 @@ public class XsdAttribute {
     private String use = "optional"; // optional, required, prohibited
     private String defaultValue;
     private String fixedValue;
-    private String documentation;
+    private XsdDocumentation documentation;
+    private boolean shared;
     
     /**
      * Construtor com nome do atributo.
@@ -43,6 +44,7 @@ public class XsdAttribute {
      * @param name Nome do atributo
      */
     public void setName(String name) {
+        checkNotShared();
         this.name = name;
     }
     
@@ -54,11 +56,20 @@ public class XsdAttribute {
         return type != null ? type : "string";
     }
     
+    /**
+     * Retorna o tipo exatamente como declarado no XSD, sem o padrão "string".
+     * @return Tipo declarado ou null
+     */
+    public String getDeclaredType() {
+        return type;
+    }
+    
     /**
      * Define o tipo do atributo.
      * @param type Tipo do atributo
      */
     public void setType(String type) {
+        checkNotShared();
         this.type = type;
     }
     
@@ -75,6 +86,7 @@ public class XsdAttribute {
      * @param use Uso do atributo (optional, required, prohibited)
      */
     public void setUse(String use) {
+        checkNotShared();
         this.use = use;
     }
     
@@ -91,6 +103,7 @@ public class XsdAttribute {
      * @param defaultValue Valor padrão
      */
     public void setDefaultValue(String defaultValue) {
+        checkNotShared();
         this.defaultValue = defaultValue;
     }
     
@@ -107,6 +120,7 @@ public class XsdAttribute {
      * @param fixedValue Valor fixo
      */
     public void setFixedValue(String fixedValue) {
+        checkNotShared();
         this.fixedValue = fixedValue;
     }
     
@@ -115,7 +129,7 @@ public class XsdAttribute {
      * @return Documentação
      */
     public String getDocumentation() {
-        return documentation;
+        return documentation != null ? documentation.getText() : null;
     }
     
     /**
@@ -123,9 +137,47 @@ public class XsdAttribute {
      * @param documentation Documentação
      */
     public void setDocumentation(String documentation) {
+        setDocumentationRef(documentation != null ? XsdDocumentation.of(documentation) : null);
+    }
+    
+    /**
+     * Retorna a documentação sem forçar a leitura do texto.
+     * @return Documentação ou null
+     */
+    public XsdDocumentation getDocumentationRef() {
+        return documentation;
+    }
+    
+    /**
+     * Define a documentação do atributo, possivelmente carregada sob demanda.
+     * @param documentation Documentação
+     */
+    public void setDocumentationRef(XsdDocumentation documentation) {
+        checkNotShared();
         this.documentation = documentation;
     }
     
+    /**
+     * Torna o atributo imutável para que possa ser compartilhado (ver XsdCanonicalizer).
+     */
+    public void markShared() {
+        shared = true;
+    }
+    
+    /**
+     * Verifica se o atributo é compartilhado e portanto imutável.
+     * @return true se compartilhado
+     */
+    public boolean isShared() {
+        return shared;
+    }
+    
+    private void checkNotShared() {
+        if (shared) {
+            throw new IllegalStateException("Atributo compartilhado não pode ser alterado: " + name);
+        }
+    }
+    
     /**
      * Verifica se o atributo é obrigatório.
      * @return true se obrigatório
@@ -183,6 +235,7 @@ public class XsdAttribute {
             info.append("\n").append(valueInfo);
         }
         
+        String documentation = getDocumentation();
         if (documentation != null) {
             info.append("\nDocumentação: ").append(documentation);
         }
@@ -1,16 +1,18 @@
 package br.com.clmDev.xsd_view.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Representa um tipo complexo XSD.
  * Exemplo: <xs:complexType name="PersonType">...</xs:complexType>
  */
-public class XsdComplexType implements XsdType {
+public class XsdComplexType implements XsdType, XsdContentHolder {
     private String name;
-    private List<XsdElement> elements = new ArrayList<>();
-    private List<XsdAttribute> attributes = new ArrayList<>();
+    // Alocadas só no primeiro elemento/atributo
+    private List<XsdElement> elements = Collections.emptyList();
+    private List<XsdAttribute> attributes = Collections.emptyList();
     private String documentation;
     private String baseType; // Para extensões
     private boolean isAbstract = false;
@@ -50,9 +52,17 @@ public class XsdComplexType implements XsdType {
      * @param element Elemento a ser adicionado
      */
     public void addElement(XsdElement element) {
+        if (elements.isEmpty()) {
+            elements = new ArrayList<>();
+        }
         elements.add(element);
     }
     
+    @Override
+    public void addContentElement(XsdElement element) {
+        addElement(element);
+    }
+    
     /**
      * Remove um elemento do tipo complexo.
      * @param element Elemento a ser removido
@@ -74,7 +84,11 @@ public class XsdComplexType implements XsdType {
      * Adiciona um atributo ao tipo complexo.
      * @param attribute Atributo a ser adicionado
      */
+    @Override
     public void addAttribute(XsdAttribute attribute) {
+        if (attributes.isEmpty()) {
+            attributes = new ArrayList<>(4);
+        }
         attributes.add(attribute);
     }
     
@@ -0,0 +1,20 @@
+package br.com.clmDev.xsd_view.model;
+
+/**
+ * Interface comum para quem recebe o conteúdo de um complexType.
+ * Implementada por XsdElement (complexType inline) e XsdComplexType (tipo nomeado).
+ */
+public interface XsdContentHolder {
+
+    /**
+     * Adiciona um elemento declarado em sequence/choice do complexType.
+     * @param element Elemento a ser adicionado
+     */
+    void addContentElement(XsdElement element);
+
+    /**
+     * Adiciona um atributo declarado no complexType.
+     * @param attribute Atributo a ser adicionado
+     */
+    void addAttribute(XsdAttribute attribute);
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package br.com.clmDev.xsd_view.model;
+
+import java.util.Objects;
+
+/**
+ * Documentação (xs:documentation) de um elemento ou atributo.
+ * Pode ser um texto já carregado ou apenas a posição do texto no XSD, lida e decodificada
+ * pela origem só quando pedida.
+ */
+public abstract class XsdDocumentation {
+
+    private XsdDocumentation() {
+    }
+
+    /**
+     * @param text Texto já carregado
+     * @return Documentação com o texto
+     */
+    public static XsdDocumentation of(String text) {
+        return new Text(text);
+    }
+
+    /**
+     * Referência ao conteúdo de um xs:documentation, entre o fim da tag de abertura e o
+     * início da tag de fechamento.
+     * @param source Texto de onde a posição foi lida
+     * @param offset Offset do conteúdo na origem (bytes no arquivo, caracteres no texto do editor)
+     * @param length Tamanho do conteúdo (0 para &lt;xs:documentation/&gt;)
+     * @return Documentação carregada sob demanda
+     */
+    public static XsdDocumentation at(XsdTextSource source, int offset, int length) {
+        return new Location(source, offset, length);
+    }
+
+    /**
+     * @return Texto sem espaços nas pontas, ou o aviso da origem se ela não pôde mais ser lida
+     */
+    public abstract String getText();
+
+    /**
+     * @return true se o texto é lido da origem sob demanda
+     */
+    public abstract boolean isLazy();
+
+    private static final class Text extends XsdDocumentation {
+        private final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public boolean isLazy() {
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Text && Objects.equals(text, ((Text) o).text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(text);
+        }
+    }
+
+    /**
+     * Posição do texto na origem. Ocupa dois inteiros em vez do texto, que no leiaute
+     * da NF-e é longo em quase todo nó e raramente é aberto.
+     * Duas posições são iguais quando apontam o mesmo trecho da mesma origem.
+     */
+    public static final class Location extends XsdDocumentation {
+        private final XsdTextSource source;
+        private final int offset;
+        private final int length;
+
+        Location(XsdTextSource source, int offset, int length) {
+            this.source = source;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public XsdTextSource getSource() {
+            return source;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public boolean isLazy() {
+            return true;
+        }
+
+        @Override
+        public String getText() {
+            return source.readDocumentation(offset, length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Location)) {
+                return false;
+            }
+            Location other = (Location) o;
+            return source.equals(other.source) && offset == other.offset && length == other.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return (source.hashCode() * 31 + offset) * 31 + length;
+        }
+    }
+}
\ No newline at end of file
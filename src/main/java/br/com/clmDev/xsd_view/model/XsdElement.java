@@ -1,18 +1,33 @@
 package br.com.clmDev.xsd_view.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-public class XsdElement implements XsdType {
+public class XsdElement implements XsdType, XsdContentHolder {
+    /**
+     * Valor de maxOccurs para "unbounded".
+     */
+    public static final int UNBOUNDED = -1;
+    
     private String name;
     private String type;
     private int minOccurs = 1;
-    private String maxOccurs = "1";
-    private List<XsdElement> children = new ArrayList<>();
-    private List<XsdAttribute> attributes = new ArrayList<>();
+    private int maxOccurs = 1;
+    // Texto do maxOccurs quando não é número nem "unbounded": exibido como está no XSD
+    private String invalidMaxOccurs;
+    // Folhas são a maioria: as listas só são alocadas no primeiro filho/atributo
+    private List<XsdElement> children = Collections.emptyList();
+    private List<XsdAttribute> attributes = Collections.emptyList();
     private boolean isRoot = false;
-    private String documentation;
+    // Texto ou posição no XSD (ver XsdDocumentation): lido só quando exibido
+    private XsdDocumentation documentation;
+    private String occurrenceString;
+    private boolean shared;
     
+    /**
+     * Os parsers passam nomes já internados na estrutura (ver {@link XsdStructure#intern}).
+     */
     public XsdElement(String name) {
         this.name = name;
     }
@@ -28,6 +43,7 @@ public class XsdElement implements XsdType {
     }
     
     public void setName(String name) {
+        checkNotShared();
         this.name = name;
     }
     
@@ -35,24 +51,104 @@ public class XsdElement implements XsdType {
         return type != null ? type : "string";
     }
     
+    /**
+     * Retorna o tipo exatamente como declarado no XSD, sem o padrão "string".
+     * @return Tipo declarado ou null
+     */
+    public String getDeclaredType() {
+        return type;
+    }
+    
     public void setType(String type) {
+        checkNotShared();
         this.type = type;
     }
     
+    /**
+     * Resolve o tipo declarado para o tipo complexo correspondente via {@link XsdStructure#resolveType}.
+     * A resolução fica memorizada na estrutura, e não no elemento, pois elementos de módulos
+     * compartilhados aparecem em várias estruturas ao mesmo tempo.
+     * @param structure Estrutura onde o tipo é buscado
+     * @return Tipo complexo referenciado ou null (tipo simples, nativo ou não encontrado)
+     */
+    public XsdComplexType resolveType(XsdStructure structure) {
+        return structure.resolveType(this);
+    }
+    
+    /**
+     * Retorna os filhos exibidos ao expandir o elemento: os declarados inline ou,
+     * se não houver, os elementos do tipo complexo referenciado.
+     * @param structure Estrutura onde o tipo é buscado
+     * @return Lista de filhos
+     */
+    public List<XsdElement> getContentChildren(XsdStructure structure) {
+        if (!children.isEmpty()) {
+            return children;
+        }
+        XsdComplexType complexType = resolveType(structure);
+        return complexType != null ? complexType.getElements() : children;
+    }
+    
     public int getMinOccurs() {
         return minOccurs;
     }
     
     public void setMinOccurs(int minOccurs) {
+        checkNotShared();
         this.minOccurs = minOccurs;
+        this.occurrenceString = null;
     }
     
     public String getMaxOccurs() {
+        if (invalidMaxOccurs != null) {
+            return invalidMaxOccurs;
+        }
+        if (maxOccurs == UNBOUNDED) {
+            return "unbounded";
+        }
+        return maxOccurs == 1 ? "1" : Integer.toString(maxOccurs);
+    }
+    
+    /**
+     * @return Máximo de ocorrências ou {@link #UNBOUNDED}; 1 se o valor do XSD for inválido
+     */
+    public int getMaxOccursValue() {
         return maxOccurs;
     }
     
+    /**
+     * @return true se o maxOccurs do XSD não é número nem "unbounded" (ver {@link #getMaxOccurs()})
+     */
+    public boolean hasInvalidMaxOccurs() {
+        return invalidMaxOccurs != null;
+    }
+    
+    /**
+     * Define o máximo de ocorrências a partir do valor do XSD ("unbounded" ou número).
+     * Um valor inválido é mantido como texto para exibição, com valor numérico 1.
+     */
     public void setMaxOccurs(String maxOccurs) {
+        if ("unbounded".equals(maxOccurs)) {
+            setMaxOccurs(UNBOUNDED);
+            return;
+        }
+        if (maxOccurs == null) {
+            setMaxOccurs(1);
+            return;
+        }
+        try {
+            setMaxOccurs(Integer.parseInt(maxOccurs.trim()));
+        } catch (NumberFormatException e) {
+            setMaxOccurs(1);
+            this.invalidMaxOccurs = maxOccurs;
+        }
+    }
+    
+    public void setMaxOccurs(int maxOccurs) {
+        checkNotShared();
         this.maxOccurs = maxOccurs;
+        this.invalidMaxOccurs = null;
+        this.occurrenceString = null;
     }
     
     public List<XsdElement> getChildren() {
@@ -60,14 +156,28 @@ public class XsdElement implements XsdType {
     }
     
     public void addChild(XsdElement child) {
+        checkNotShared();
+        if (children.isEmpty()) {
+            children = new ArrayList<>(4);
+        }
         children.add(child);
     }
     
+    @Override
+    public void addContentElement(XsdElement element) {
+        addChild(element);
+    }
+    
     public List<XsdAttribute> getAttributes() {
         return attributes;
     }
     
+    @Override
     public void addAttribute(XsdAttribute attribute) {
+        checkNotShared();
+        if (attributes.isEmpty()) {
+            attributes = new ArrayList<>(4);
+        }
         attributes.add(attribute);
     }
     
@@ -76,17 +186,56 @@ public class XsdElement implements XsdType {
     }
     
     public void setRoot(boolean root) {
+        checkNotShared();
         isRoot = root;
     }
     
     public String getDocumentation() {
-        return documentation;
+        return documentation != null ? documentation.getText() : null;
     }
     
     public void setDocumentation(String documentation) {
+        setDocumentationRef(documentation != null ? XsdDocumentation.of(documentation) : null);
+    }
+    
+    /**
+     * @return Documentação sem forçar a leitura do texto
+     */
+    public XsdDocumentation getDocumentationRef() {
+        return documentation;
+    }
+    
+    public void setDocumentationRef(XsdDocumentation documentation) {
+        checkNotShared();
         this.documentation = documentation;
     }
     
+    /**
+     * Torna o elemento imutável para que possa ser compartilhado por vários pais
+     * (ver XsdCanonicalizer). Os filhos devem ter sido compartilhados antes.
+     */
+    public void markShared() {
+        if (!shared) {
+            shared = true;
+            if (!children.isEmpty()) {
+                children = Collections.unmodifiableList(children);
+            }
+            if (!attributes.isEmpty()) {
+                attributes = Collections.unmodifiableList(attributes);
+            }
+        }
+    }
+    
+    public boolean isShared() {
+        return shared;
+    }
+    
+    private void checkNotShared() {
+        if (shared) {
+            throw new IllegalStateException("Elemento compartilhado não pode ser alterado: " + name);
+        }
+    }
+    
     public boolean hasChildren() {
         return !children.isEmpty();
     }
@@ -95,11 +244,15 @@ public class XsdElement implements XsdType {
         return !attributes.isEmpty();
     }
     
+    /**
+     * Texto das ocorrências exibido no painel, montado uma vez e reaproveitado a cada pintura.
+     */
     public String getOccurrenceString() {
-        if (minOccurs == 1 && "1".equals(maxOccurs)) {
-            return "";
+        if (occurrenceString == null) {
+            occurrenceString = minOccurs == 1 && maxOccurs == 1 && invalidMaxOccurs == null
+                    ? "" : "[" + minOccurs + ".." + getMaxOccurs() + "]";
         }
-        return String.format("[%d..%s]", minOccurs, maxOccurs);
+        return occurrenceString;
     }
     
     @Override
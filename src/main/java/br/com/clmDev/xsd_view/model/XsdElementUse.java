@@ -0,0 +1,149 @@
+package br.com.clmDev.xsd_view.model;
+
+/**
+ * Ocorrência de um elemento num caminho da árvore exibida.
+ * Os filhos vindos de um tipo complexo nomeado são os próprios XsdElement do tipo,
+ * compartilhados por todos os elementos que o usam (um grafo acíclico, sem cópias);
+ * este invólucro leve só identifica por onde se chegou ao elemento, para que estado
+ * de tela como expandido/colapsado seja de cada ocorrência.
+ * Nome e ocorrências (minOccurs/maxOccurs) pertencem à partícula e vêm do elemento.
+ * A igualdade é pelo caminho de nomes e posições entre os irmãos, então sobrevive a um novo parse
+ * do mesmo arquivo e distingue irmãos de mesmo nome (ex.: em ramos diferentes de um xs:choice).
+ */
+public final class XsdElementUse {
+    private final XsdElementUse parent;
+    private final String scope;
+    private final XsdElement element;
+    private final int index;
+    private final int hash;
+
+    private XsdElementUse(XsdElementUse parent, String scope, XsdElement element, int index) {
+        this.parent = parent;
+        this.scope = scope;
+        this.element = element;
+        this.index = index;
+        int h = parent != null ? parent.hash : (scope != null ? scope.hashCode() : 0);
+        this.hash = 31 * (31 * h + (element.getName() != null ? element.getName().hashCode() : 0)) + index;
+    }
+
+    /**
+     * @param element Elemento raiz do schema
+     * @param index Posição do elemento entre os elementos raiz
+     * @return Ocorrência do elemento raiz
+     */
+    public static XsdElementUse root(XsdElement element, int index) {
+        return new XsdElementUse(null, null, element, index);
+    }
+
+    /**
+     * @param complexType Tipo complexo exibido na lista de tipos do schema
+     * @param element Elemento do tipo
+     * @param index Posição do elemento entre os elementos do tipo
+     * @return Ocorrência do elemento sob o tipo
+     */
+    public static XsdElementUse inType(XsdComplexType complexType, XsdElement element, int index) {
+        return new XsdElementUse(null, complexType.getName(), element, index);
+    }
+
+    /**
+     * @param child Filho inline ou elemento do tipo referenciado por este elemento
+     * @param index Posição do filho entre os filhos exibidos deste elemento
+     * @return Ocorrência do filho neste caminho
+     */
+    public XsdElementUse child(XsdElement child, int index) {
+        return new XsdElementUse(this, null, child, index);
+    }
+
+    public XsdElementUse getParent() {
+        return parent;
+    }
+
+    public XsdElement getElement() {
+        return element;
+    }
+
+    /**
+     * @return Posição do elemento entre os irmãos exibidos
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return element.getName();
+    }
+
+    public int getMinOccurs() {
+        return element.getMinOccurs();
+    }
+
+    public String getMaxOccurs() {
+        return element.getMaxOccurs();
+    }
+
+    public String getOccurrenceString() {
+        return element.getOccurrenceString();
+    }
+
+    /**
+     * @return true se for um elemento raiz do schema
+     */
+    public boolean isTopLevel() {
+        return parent == null && scope == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof XsdElementUse)) {
+            return false;
+        }
+        XsdElementUse other = (XsdElementUse) o;
+        if (hash != other.hash) {
+            return false;
+        }
+        XsdElementUse a = this;
+        XsdElementUse b = other;
+        while (a != null && b != null) {
+            if (a == b) {
+                return true;
+            }
+            if (a.index != b.index || !equalNames(a.getName(), b.getName()) || !equalNames(a.scope, b.scope)) {
+                return false;
+            }
+            a = a.parent;
+            b = b.parent;
+        }
+        return a == b;
+    }
+
+    private static boolean equalNames(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        // Montado do fim para o início, sem recursão pelos ancestrais
+        StringBuilder path = new StringBuilder(step(this));
+        XsdElementUse use = this;
+        while (use.parent != null) {
+            use = use.parent;
+            path.insert(0, '/').insert(0, step(use));
+        }
+        if (use.scope != null) {
+            path.insert(0, ':').insert(0, use.scope);
+        }
+        return path.toString();
+    }
+
+    private static String step(XsdElementUse use) {
+        return use.getName() + "[" + use.index + "]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+package br.com.clmDev.xsd_view.model;
+
+/**
+ * Representa uma referência a outro arquivo de schema.
+ * Exemplo: <xs:include schemaLocation="tiposBasico_v4.00.xsd"/>
+ */
+public class XsdSchemaReference {
+
+    /**
+     * Tipo de referência: include e redefine trazem o mesmo namespace; import traz outro namespace.
+     */
+    public enum Kind {
+        INCLUDE,
+        IMPORT,
+        REDEFINE
+    }
+
+    private final Kind kind;
+    private final String schemaLocation;
+    private final String namespace;
+
+    /**
+     * @param kind Tipo de referência
+     * @param schemaLocation Caminho informado no atributo schemaLocation (pode ser null em imports)
+     * @param namespace Namespace importado (apenas para import)
+     */
+    public XsdSchemaReference(Kind kind, String schemaLocation, String namespace) {
+        this.kind = kind;
+        this.schemaLocation = schemaLocation;
+        this.namespace = namespace;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getSchemaLocation() {
+        return schemaLocation;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @Override
+    public String toString() {
+        return kind.name().toLowerCase() + " " + schemaLocation;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+package br.com.clmDev.xsd_view.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Resumo de um arquivo XSD guardado no índice do projeto: o que ele declara no topo,
+ * o que ele referencia e quantos nós tem, sem a árvore completa.
+ */
+public final class XsdSchemaSummary {
+    private final String targetNamespace;
+    private final List<String> elementNames;
+    private final List<String> complexTypeNames;
+    private final List<XsdSchemaReference> references;
+    private final int nodeCount;
+
+    public XsdSchemaSummary(String targetNamespace, List<String> elementNames, List<String> complexTypeNames,
+                            List<XsdSchemaReference> references, int nodeCount) {
+        this.targetNamespace = targetNamespace;
+        this.elementNames = Collections.unmodifiableList(new ArrayList<>(elementNames));
+        this.complexTypeNames = Collections.unmodifiableList(new ArrayList<>(complexTypeNames));
+        this.references = Collections.unmodifiableList(new ArrayList<>(references));
+        this.nodeCount = nodeCount;
+    }
+
+    public String getTargetNamespace() {
+        return targetNamespace;
+    }
+
+    /**
+     * @return Nomes dos elementos de topo, na ordem do arquivo
+     */
+    public List<String> getElementNames() {
+        return elementNames;
+    }
+
+    /**
+     * @return Nomes dos tipos complexos de topo, na ordem do arquivo
+     */
+    public List<String> getComplexTypeNames() {
+        return complexTypeNames;
+    }
+
+    /**
+     * @return xs:include, xs:import e xs:redefine do arquivo
+     */
+    public List<XsdSchemaReference> getReferences() {
+        return references;
+    }
+
+    /**
+     * @return Elementos, tipos complexos e atributos declarados no arquivo
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof XsdSchemaSummary)) {
+            return false;
+        }
+        XsdSchemaSummary other = (XsdSchemaSummary) o;
+        if (nodeCount != other.nodeCount ||
+                !Objects.equals(targetNamespace, other.targetNamespace) ||
+                !elementNames.equals(other.elementNames) ||
+                !complexTypeNames.equals(other.complexTypeNames) ||
+                references.size() != other.references.size()) {
+            return false;
+        }
+        for (int i = 0; i < references.size(); i++) {
+            XsdSchemaReference a = references.get(i);
+            XsdSchemaReference b = other.references.get(i);
+            if (a.getKind() != b.getKind() ||
+                    !Objects.equals(a.getSchemaLocation(), b.getSchemaLocation()) ||
+                    !Objects.equals(a.getNamespace(), b.getNamespace())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(targetNamespace, elementNames, complexTypeNames, references.size(), nodeCount);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d elementos, %d tipos complexos, %d referências, %d nós",
+                targetNamespace, elementNames.size(), complexTypeNames.size(), references.size(), nodeCount);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package br.com.clmDev.xsd_view.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tabela de strings internadas: cada nome distinto é guardado uma única vez.
+ * Usada por uma XsdStructure só enquanto ela é montada (ver {@link XsdStructure#intern}).
+ */
+public final class XsdStringTable {
+    private final Map<String, String> strings = new HashMap<>();
+
+    /**
+     * Instância única do texto na tabela, para que nós com o mesmo nome compartilhem a mesma String.
+     * @param value Texto a internar (pode ser null)
+     * @return Texto guardado na tabela, ou null
+     */
+    public String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = strings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
\ No newline at end of file
@@ -2,6 +2,7 @@ package br.com.clmDev.xsd_view.model;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -9,7 +10,50 @@ public class XsdStructure {
     private List<XsdElement> rootElements = new ArrayList<>();
     private List<XsdComplexType> complexTypes = new ArrayList<>();
     private Map<String, XsdType> typeMap = new HashMap<>();
+    private Map<String, XsdType> externalTypes = new HashMap<>();
+    // Busca fora dos arquivos referenciados e os nomes que ela não encontrou, para não repetir a busca
+    private XsdTypeFallback typeFallback;
+    private List<XsdSchemaReference> schemaReferences = new ArrayList<>();
     private String targetNamespace;
+    // Tipos resolvidos por elemento, descartados quando a busca de tipos muda
+    private final Map<XsdElement, Resolution> resolvedTypes = new IdentityHashMap<>();
+    // Nomes e tipos se repetem muito (ex.: TDec_1302, xs:string): uma cópia só por estrutura.
+    // A tabela só existe durante o parse; depois os nós já guardam as instâncias compartilhadas
+    private XsdStringTable names;
+    private String truncationMessage;
+    
+    /**
+     * Resultado da resolução de um elemento, com o tipo declarado usado (o elemento pode mudar de tipo).
+     */
+    private static final class Resolution {
+        final String declaredType;
+        final XsdComplexType complexType;
+        
+        Resolution(String declaredType, XsdComplexType complexType) {
+            this.declaredType = declaredType;
+            this.complexType = complexType;
+        }
+    }
+    
+    /**
+     * Devolve a instância única do texto nesta estrutura; usado pelos parsers para nomes e tipos.
+     * @param value Texto lido do XSD (pode ser null)
+     * @return Texto compartilhado
+     */
+    public String intern(String value) {
+        if (names == null) {
+            names = new XsdStringTable();
+        }
+        return names.canonical(value);
+    }
+    
+    /**
+     * Chamado pelos parsers ao terminar, inclusive com resultado truncado: a tabela de nomes
+     * deixa de ocupar memória enquanto a estrutura é exibida.
+     */
+    public void discardNameTable() {
+        names = null;
+    }
     
     public void addElement(XsdElement element) {
         rootElements.add(element);
@@ -18,6 +62,31 @@ public class XsdStructure {
     public void addComplexType(XsdComplexType complexType) {
         complexTypes.add(complexType);
         typeMap.put(complexType.getName(), complexType);
+        typesChanged();
+    }
+    
+    /**
+     * Substitui o elemento raiz na posição indicada (usado pelo parse incremental).
+     * @return Elemento substituído
+     */
+    public XsdElement replaceElement(int index, XsdElement element) {
+        // Os elementos da declaração antiga não serão mais exibidos
+        resolvedTypes.clear();
+        return rootElements.set(index, element);
+    }
+    
+    /**
+     * Substitui o tipo complexo na posição indicada, mantendo o typeMap coerente.
+     * @return Tipo complexo substituído
+     */
+    public XsdComplexType replaceComplexType(int index, XsdComplexType complexType) {
+        XsdComplexType previous = complexTypes.set(index, complexType);
+        if (typeMap.get(previous.getName()) == previous) {
+            typeMap.remove(previous.getName());
+        }
+        typeMap.put(complexType.getName(), complexType);
+        typesChanged();
+        return previous;
     }
     
     public List<XsdElement> getRootElements() {
@@ -28,8 +97,110 @@ public class XsdStructure {
         return complexTypes;
     }
     
+    /**
+     * Busca um tipo declarado neste arquivo ou, se não houver, nos arquivos incluídos/importados
+     * e por fim na busca alternativa, se houver; o que ela encontra passa a valer como tipo externo.
+     * @param typeName Nome do tipo
+     * @return Tipo encontrado ou null
+     */
     public XsdType getType(String typeName) {
-        return typeMap.get(typeName);
+        XsdType type = typeMap.get(typeName);
+        if (type == null) {
+            type = externalTypes.get(typeName);
+        }
+        if (type == null && typeFallback != null) {
+            // A busca memoriza as ausências; um tipo ausente agora pode ser encontrado depois
+            type = typeFallback.findType(typeName);
+            if (type != null) {
+                externalTypes.put(typeName, type);
+            }
+        }
+        return type;
+    }
+    
+    /**
+     * Define a busca usada para os tipos que não estão neste arquivo nem nos arquivos referenciados.
+     * @param typeFallback Busca alternativa (ex.: índice do projeto), ou null para nenhuma
+     */
+    public void setTypeFallback(XsdTypeFallback typeFallback) {
+        this.typeFallback = typeFallback;
+        typesChanged();
+    }
+    
+    /**
+     * Registra os tipos de um arquivo incluído/importado para a busca de tipos.
+     * Tipos já conhecidos (deste arquivo ou de um arquivo mesclado antes) são mantidos.
+     * @param other Estrutura do arquivo referenciado
+     */
+    public void mergeTypesFrom(XsdStructure other) {
+        for (XsdComplexType complexType : other.complexTypes) {
+            if (!typeMap.containsKey(complexType.getName())) {
+                externalTypes.putIfAbsent(complexType.getName(), complexType);
+            }
+        }
+        typesChanged();
+    }
+    
+    /**
+     * Copia os tipos externos já resolvidos e a busca alternativa de outra estrutura do mesmo arquivo
+     * (ex.: após novo parse do editor).
+     * @param previous Estrutura anterior
+     */
+    public void inheritExternalTypes(XsdStructure previous) {
+        if (typeFallback == null) {
+            typeFallback = previous.typeFallback;
+        }
+        for (Map.Entry<String, XsdType> entry : previous.externalTypes.entrySet()) {
+            if (!typeMap.containsKey(entry.getKey())) {
+                externalTypes.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+        typesChanged();
+    }
+    
+    /**
+     * Resolve o tipo declarado do elemento para o tipo complexo correspondente via {@link #getType}.
+     * A resolução é feita só quando pedida e memorizada enquanto os tipos desta estrutura não mudarem.
+     * Prefixos de namespace (ex.: "tns:TEndereco") são ignorados se o nome completo não for encontrado.
+     * @param element Elemento desta estrutura ou de um módulo referenciado por ela
+     * @return Tipo complexo referenciado ou null (tipo simples, nativo ou não encontrado)
+     */
+    public XsdComplexType resolveType(XsdElement element) {
+        String declaredType = element.getDeclaredType();
+        if (declaredType == null) {
+            return null;
+        }
+        Resolution resolution = resolvedTypes.get(element);
+        if (resolution == null || !declaredType.equals(resolution.declaredType)) {
+            XsdType found = getType(declaredType);
+            int colon = declaredType.indexOf(':');
+            if (found == null && colon >= 0) {
+                found = getType(declaredType.substring(colon + 1));
+            }
+            resolution = new Resolution(declaredType, found instanceof XsdComplexType ? (XsdComplexType) found : null);
+            resolvedTypes.put(element, resolution);
+        }
+        return resolution.complexType;
+    }
+    
+    /**
+     * Esquece as resoluções memorizadas, para que os tipos ainda não encontrados sejam procurados de novo
+     * (ex.: a busca alternativa acabou de encontrar um tipo em segundo plano).
+     */
+    public void forgetResolvedTypes() {
+        typesChanged();
+    }
+
+    private void typesChanged() {
+        resolvedTypes.clear();
+    }
+    
+    public void addSchemaReference(XsdSchemaReference reference) {
+        schemaReferences.add(reference);
+    }
+    
+    public List<XsdSchemaReference> getSchemaReferences() {
+        return schemaReferences;
     }
     
     public String getTargetNamespace() {
@@ -40,6 +211,25 @@ public class XsdStructure {
         this.targetNamespace = targetNamespace;
     }
     
+    /**
+     * Marca a estrutura como parcial: o parse parou ao atingir um limite de recursos.
+     * @param message Descrição para exibir, ex.: "Estrutura truncada em 5000 nós (limite de 5000 nós)"
+     */
+    public void markTruncated(String message) {
+        this.truncationMessage = message;
+    }
+    
+    public boolean isTruncated() {
+        return truncationMessage != null;
+    }
+    
+    /**
+     * @return Descrição do limite atingido, ou null se a estrutura estiver completa
+     */
+    public String getTruncationMessage() {
+        return truncationMessage;
+    }
+    
     public boolean isEmpty() {
         return rootElements.isEmpty() && complexTypes.isEmpty();
     }
@@ -0,0 +1,17 @@
+package br.com.clmDev.xsd_view.model;
+
+/**
+ * Origem do texto de um XSD já processado (arquivo ou conteúdo do editor),
+ * usada para ler a documentação sob demanda.
+ */
+public interface XsdTextSource {
+
+    /**
+     * @param offset Início do conteúdo de um xs:documentation, logo após a tag de abertura
+     *               (em bytes no arquivo ou em caracteres no texto do editor, conforme a origem)
+     * @param length Tamanho do conteúdo, até a tag de fechamento, na mesma unidade
+     * @return Texto decodificado e sem espaços nas pontas, um aviso se a origem não pôde mais ser lida
+     * (ex.: o arquivo mudou desde o parse), ou null se a posição não vale para a origem
+     */
+    String readDocumentation(int offset, int length);
+}
\ No newline at end of file
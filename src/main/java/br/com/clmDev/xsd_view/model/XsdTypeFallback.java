@@ -0,0 +1,16 @@
+package br.com.clmDev.xsd_view.model;
+
+/**
+ * Busca de tipos fora do grafo de include/import de uma estrutura (ex.: nos demais XSD do projeto),
+ * consultada por {@link XsdStructure#getType} quando o nome não é encontrado.
+ * É chamada na EDT durante a expansão, então não deve bloquear: buscas demoradas são feitas em
+ * segundo plano e a estrutura é avisada por {@link XsdStructure#forgetResolvedTypes()}.
+ */
+public interface XsdTypeFallback {
+
+    /**
+     * @param typeName Nome do tipo como declarado no elemento (pode ter prefixo)
+     * @return Tipo encontrado, ou null se não existe ou ainda está sendo procurado
+     */
+    XsdType findType(String typeName);
+}
\ No newline at end of file
@@ -0,0 +1,132 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdTextSource;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Origem que lê só o trecho de cada documentação pedida, decodifica as entidades e marcação dele e guarda
+ * os textos mais recentes num pequeno cache LRU próprio: o cache vive e morre com a estrutura que usa a origem.
+ */
+abstract class XsdCachingTextSource implements XsdTextSource {
+    private static final int DECODED_CACHE_SIZE = 64;
+
+    private static final XsdObjectPool<XMLInputFactory> FRAGMENT_FACTORIES = new XsdObjectPool<>(
+            XsdCachingTextSource::createFragmentFactory, factory -> { }, 2);
+
+    private final Map<Long, String> decoded = new LinkedHashMap<Long, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > DECODED_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * @param text Texto imutável, exatamente como foi processado
+     * @return Origem sobre o texto
+     */
+    static XsdTextSource of(CharSequence text) {
+        return new XsdCachingTextSource() {
+            @Override
+            String readFragment(int offset, int length) {
+                return offset <= text.length() - length ? text.subSequence(offset, offset + length).toString() : null;
+            }
+        };
+    }
+
+    /**
+     * @param offset Início do trecho, não negativo
+     * @param length Tamanho do trecho, não negativo
+     * @return Trecho cru, exatamente como foi processado, ou null se a posição não vale para a origem
+     * @throws IOException se a origem não pôde ser lida
+     */
+    abstract String readFragment(int offset, int length) throws IOException;
+
+    /**
+     * @return Texto mostrado no lugar da documentação que não pôde ser lida, ou null
+     */
+    String unavailable(IOException e) {
+        return null;
+    }
+
+    @Override
+    public String readDocumentation(int offset, int length) {
+        Long key = ((long) offset << 32) | (length & 0xFFFFFFFFL);
+        synchronized (decoded) {
+            String cached = decoded.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (offset < 0 || length < 0) {
+            return null;
+        }
+        String fragment;
+        try {
+            fragment = readFragment(offset, length);
+        } catch (IOException e) {
+            // Não guardado no cache: a falha pode ser passageira
+            return unavailable(e);
+        }
+        if (fragment == null) {
+            return null;
+        }
+        String value = decodeFragment(fragment);
+        synchronized (decoded) {
+            decoded.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Decodifica entidades, CDATA e marcação interna do trecho, como o getTextContent() do DOM.
+     */
+    private static String decodeFragment(String fragment) {
+        if (fragment.indexOf('<') < 0 && fragment.indexOf('&') < 0 && fragment.indexOf('\r') < 0) {
+            // Texto simples: nada a decodificar nem quebras de linha a normalizar
+            return fragment.trim();
+        }
+        StringBuilder text = new StringBuilder(fragment.length());
+        XMLInputFactory factory = FRAGMENT_FACTORIES.acquire();
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(new StringReader("<d>" + fragment + "</d>"));
+            try {
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.CHARACTERS:
+                        case XMLStreamConstants.CDATA:
+                        case XMLStreamConstants.SPACE:
+                            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            // Trecho que não fecha como XML (ex.: prefixo de entidade externa): devolver o texto cru
+            return fragment.trim();
+        } finally {
+            FRAGMENT_FACTORIES.release(factory);
+        }
+        return text.toString().trim();
+    }
+
+    private static XMLInputFactory createFragmentFactory() {
+        XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+        // O trecho pode conter prefixos declarados fora dele
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        return factory;
+    }
+}
\ No newline at end of file
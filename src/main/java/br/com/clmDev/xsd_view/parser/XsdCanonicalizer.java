@@ -0,0 +1,402 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdAttribute;
+import br.com.clmDev.xsd_view.model.XsdComplexType;
+import br.com.clmDev.xsd_view.model.XsdDocumentation;
+import br.com.clmDev.xsd_view.model.XsdElement;
+import br.com.clmDev.xsd_view.model.XsdStructure;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Passo opcional, feito após o parse, que troca subárvores estruturalmente idênticas
+ * (ex.: os grupos inline repetidos de ICMS, PIS e COFINS do leiaute da NF-e) por uma
+ * única instância compartilhada e imutável.
+ * Elementos raiz e tipos complexos de topo não são trocados, pois o parse incremental os substitui.
+ * A documentação é comparada pelo texto decodificado, não pela posição: a documentação sob demanda
+ * é lida da origem, então trechos iguais em posições diferentes também são compartilhados.
+ */
+public final class XsdCanonicalizer {
+
+    /**
+     * Propriedade de sistema que liga o passo de canonicalização (desligado por padrão).
+     * Ex.: -Dxsdview.parser.canonicalize=true
+     */
+    public static final String CANONICALIZE_PROPERTY = "xsdview.parser.canonicalize";
+
+    // Estimativas de tamanho em memória (JVM 64 bits com oops comprimidos)
+    private static final int ELEMENT_BYTES = 56;
+    private static final int ATTRIBUTE_BYTES = 40;
+    private static final int LIST_BYTES = 24 + 16 + 4 * 10;
+    private static final int STRING_BYTES = 24 + 16;
+    private static final int DOCUMENTATION_REF_BYTES = 40;
+
+    /**
+     * Resultado da canonicalização.
+     */
+    public static final class Result {
+        private final int nodes;
+        private final int nodesSaved;
+        private final long bytesSaved;
+
+        Result(int nodes, int nodesSaved, long bytesSaved) {
+            this.nodes = nodes;
+            this.nodesSaved = nodesSaved;
+            this.bytesSaved = bytesSaved;
+        }
+
+        /**
+         * @return Elementos e atributos visitados
+         */
+        public int getNodes() {
+            return nodes;
+        }
+
+        /**
+         * @return Elementos e atributos duplicados que deixaram de existir
+         */
+        public int getNodesSaved() {
+            return nodesSaved;
+        }
+
+        /**
+         * @return Estimativa de bytes liberados
+         */
+        public long getBytesSaved() {
+            return bytesSaved;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d de %d nós compartilhados, ~%d KB economizados", nodesSaved, nodes, bytesSaved / 1024);
+        }
+    }
+
+    private final Map<NodeKey, XsdElement> canonicalElements = new HashMap<>();
+    private final Map<AttributeKey, XsdAttribute> canonicalAttributes = new HashMap<>();
+    private final Map<Object, Integer> hashes = new IdentityHashMap<>();
+    private int nodes;
+    private int nodesSaved;
+    private long bytesSaved;
+
+    private XsdCanonicalizer() {
+    }
+
+    /**
+     * @return true se a canonicalização foi ligada pela propriedade de sistema
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(CANONICALIZE_PROPERTY);
+    }
+
+    /**
+     * Compartilha as subárvores duplicadas da estrutura, alterando-a no lugar.
+     * @param structure Estrutura recém processada
+     * @return Quantidade de nós e bytes economizados
+     */
+    public static Result canonicalize(XsdStructure structure) {
+        XsdCanonicalizer canonicalizer = new XsdCanonicalizer();
+        for (XsdElement root : structure.getRootElements()) {
+            canonicalizer.canonicalizeContent(root, root.getChildren(), root.getAttributes());
+        }
+        for (XsdComplexType complexType : structure.getComplexTypes()) {
+            canonicalizer.canonicalizeContent(null, complexType.getElements(), complexType.getAttributes());
+        }
+        return new Result(canonicalizer.nodes, canonicalizer.nodesSaved, canonicalizer.bytesSaved);
+    }
+
+    /**
+     * Hash estrutural da subárvore: nome, tipo, ocorrências, documentação, atributos e filhos.
+     * Subárvores estruturalmente iguais têm o mesmo hash.
+     */
+    public static int structuralHash(XsdElement element) {
+        // Pós-ordem com pilha explícita: o hash de cada filho entra no do pai quando o filho termina
+        Deque<HashFrame> stack = new ArrayDeque<>();
+        stack.push(new HashFrame(element));
+        while (true) {
+            HashFrame frame = stack.peek();
+            List<XsdElement> children = frame.element.getChildren();
+            if (frame.next < children.size()) {
+                stack.push(new HashFrame(children.get(frame.next++)));
+                continue;
+            }
+            stack.pop();
+            if (stack.isEmpty()) {
+                return frame.hash;
+            }
+            HashFrame parent = stack.peek();
+            parent.hash = 31 * parent.hash + frame.hash;
+        }
+    }
+
+    /**
+     * Compara duas subárvores campo a campo, recorrendo ao hash estrutural para descartar diferenças rápido.
+     */
+    public static boolean structurallyEqual(XsdElement a, XsdElement b) {
+        if (a == b) {
+            return true;
+        }
+        if (!shallowEquals(a, b) || structuralHash(a) != structuralHash(b)) {
+            return false;
+        }
+        // Pares de nós a comparar, empilhados lado a lado
+        Deque<XsdElement> pending = new ArrayDeque<>();
+        pending.push(a);
+        pending.push(b);
+        while (!pending.isEmpty()) {
+            XsdElement right = pending.pop();
+            XsdElement left = pending.pop();
+            if (left == right) {
+                continue;
+            }
+            if (!shallowEquals(left, right) || !attributesEqual(left.getAttributes(), right.getAttributes()) ||
+                    left.getChildren().size() != right.getChildren().size()) {
+                return false;
+            }
+            for (int i = 0; i < left.getChildren().size(); i++) {
+                pending.push(left.getChildren().get(i));
+                pending.push(right.getChildren().get(i));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Canonicaliza os filhos e atributos de um nó que não será compartilhado (raiz ou tipo de topo).
+     * Percorre a subárvore de baixo para cima com pilha explícita: quando um nó é concluído, os seus filhos
+     * já são instâncias canônicas, então a comparação com o candidato é rasa (filhos por identidade).
+     */
+    private void canonicalizeContent(XsdElement owner, List<XsdElement> children, List<XsdAttribute> attributes) {
+        if (owner != null && owner.isShared()) {
+            return;
+        }
+        canonicalizeAttributes(attributes);
+        Deque<ContentFrame> stack = new ArrayDeque<>();
+        stack.push(new ContentFrame(owner, children));
+        while (!stack.isEmpty()) {
+            ContentFrame frame = stack.peek();
+            if (frame.next < frame.children.size()) {
+                XsdElement child = frame.children.get(frame.next);
+                nodes++;
+                if (!child.isShared()) {
+                    canonicalizeAttributes(child.getAttributes());
+                    stack.push(new ContentFrame(child, child.getChildren()));
+                    continue;
+                }
+                frame.children.set(frame.next++, canonicalElement(child));
+                continue;
+            }
+            stack.pop();
+            if (!stack.isEmpty()) {
+                // O dono do quadro concluído é o filho atual do quadro de baixo
+                ContentFrame parent = stack.peek();
+                parent.children.set(parent.next++, canonicalElement(frame.owner));
+            }
+        }
+    }
+
+    private void canonicalizeAttributes(List<XsdAttribute> attributes) {
+        for (int i = 0; i < attributes.size(); i++) {
+            attributes.set(i, canonicalAttribute(attributes.get(i)));
+        }
+    }
+
+    /**
+     * Troca o elemento, cujos filhos e atributos já são canônicos, pela instância canônica equivalente.
+     */
+    private XsdElement canonicalElement(XsdElement element) {
+        int hash = shallowHash(element);
+        for (XsdAttribute attribute : element.getAttributes()) {
+            hash = 31 * hash + hashes.getOrDefault(attribute, 0);
+        }
+        for (XsdElement child : element.getChildren()) {
+            hash = 31 * hash + hashes.getOrDefault(child, 0);
+        }
+
+        NodeKey key = new NodeKey(element, hash);
+        XsdElement canonical = canonicalElements.get(key);
+        if (canonical != null && canonical != element) {
+            nodesSaved++;
+            bytesSaved += estimateBytes(element);
+            return canonical;
+        }
+        canonicalElements.put(key, element);
+        hashes.put(element, hash);
+        element.markShared();
+        return element;
+    }
+
+    private XsdAttribute canonicalAttribute(XsdAttribute attribute) {
+        nodes++;
+        int hash = attributeHash(attribute);
+        AttributeKey key = new AttributeKey(attribute, hash);
+        XsdAttribute canonical = canonicalAttributes.get(key);
+        if (canonical != null && canonical != attribute) {
+            nodesSaved++;
+            bytesSaved += ATTRIBUTE_BYTES + stringBytes(attribute.getName()) + stringBytes(attribute.getDeclaredType()) +
+                    stringBytes(attribute.getDefaultValue()) + stringBytes(attribute.getFixedValue()) +
+                    documentationBytes(attribute.getDocumentationRef());
+            return canonical;
+        }
+        canonicalAttributes.put(key, attribute);
+        hashes.put(attribute, hash);
+        attribute.markShared();
+        return attribute;
+    }
+
+    /**
+     * Memória do nó duplicado em si; os seus filhos já foram contabilizados ao serem trocados.
+     */
+    private static long estimateBytes(XsdElement element) {
+        return ELEMENT_BYTES + 2L * LIST_BYTES + stringBytes(element.getName()) + stringBytes(element.getDeclaredType()) +
+                documentationBytes(element.getDocumentationRef());
+    }
+
+    /**
+     * Documentação carregada sob demanda ocupa só a posição, não o texto.
+     */
+    private static long documentationBytes(XsdDocumentation documentation) {
+        if (documentation == null) {
+            return 0;
+        }
+        return documentation.isLazy() ? DOCUMENTATION_REF_BYTES : 16 + stringBytes(documentation.getText());
+    }
+
+    private static long stringBytes(String value) {
+        return value != null ? STRING_BYTES + value.length() : 0;
+    }
+
+    private static int shallowHash(XsdElement element) {
+        return Objects.hash(element.getName(), element.getDeclaredType(), element.getMinOccurs(),
+                element.getMaxOccursValue(), element.isRoot(), element.getDocumentation());
+    }
+
+    private static boolean shallowEquals(XsdElement a, XsdElement b) {
+        return Objects.equals(a.getName(), b.getName()) &&
+                Objects.equals(a.getDeclaredType(), b.getDeclaredType()) &&
+                a.getMinOccurs() == b.getMinOccurs() &&
+                a.getMaxOccursValue() == b.getMaxOccursValue() &&
+                Objects.equals(a.getMaxOccurs(), b.getMaxOccurs()) &&
+                a.isRoot() == b.isRoot() &&
+                Objects.equals(a.getDocumentation(), b.getDocumentation());
+    }
+
+    private static int attributeHash(XsdAttribute attribute) {
+        return Objects.hash(attribute.getName(), attribute.getDeclaredType(), attribute.getUse(),
+                attribute.getDefaultValue(), attribute.getFixedValue(), attribute.getDocumentation());
+    }
+
+    private static boolean attributeEquals(XsdAttribute a, XsdAttribute b) {
+        return Objects.equals(a.getName(), b.getName()) &&
+                Objects.equals(a.getDeclaredType(), b.getDeclaredType()) &&
+                Objects.equals(a.getUse(), b.getUse()) &&
+                Objects.equals(a.getDefaultValue(), b.getDefaultValue()) &&
+                Objects.equals(a.getFixedValue(), b.getFixedValue()) &&
+                Objects.equals(a.getDocumentation(), b.getDocumentation());
+    }
+
+    private static boolean attributesEqual(List<XsdAttribute> a, List<XsdAttribute> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!attributeEquals(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameInstances(List<?> a, List<?> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class NodeKey {
+        private final XsdElement element;
+        private final int hash;
+
+        NodeKey(XsdElement element, int hash) {
+            this.element = element;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof NodeKey)) {
+                return false;
+            }
+            NodeKey other = (NodeKey) o;
+            return hash == other.hash && shallowEquals(element, other.element) &&
+                    sameInstances(element.getAttributes(), other.element.getAttributes()) &&
+                    sameInstances(element.getChildren(), other.element.getChildren());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class AttributeKey {
+        private final XsdAttribute attribute;
+        private final int hash;
+
+        AttributeKey(XsdAttribute attribute, int hash) {
+            this.attribute = attribute;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof AttributeKey && hash == ((AttributeKey) o).hash &&
+                    attributeEquals(attribute, ((AttributeKey) o).attribute);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class HashFrame {
+        final XsdElement element;
+        int hash;
+        int next;
+
+        HashFrame(XsdElement element) {
+            this.element = element;
+            hash = shallowHash(element);
+            for (XsdAttribute attribute : element.getAttributes()) {
+                hash = 31 * hash + attributeHash(attribute);
+            }
+        }
+    }
+
+    /**
+     * Nó cujos filhos estão sendo canonicalizados e o índice do próximo filho.
+     */
+    private static final class ContentFrame {
+        final XsdElement owner;
+        final List<XsdElement> children;
+        int next;
+
+        ContentFrame(XsdElement owner, List<XsdElement> children) {
+            this.owner = owner;
+            this.children = children;
+        }
+    }
+}
\ No newline at end of file
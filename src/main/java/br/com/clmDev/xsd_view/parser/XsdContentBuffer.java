@@ -0,0 +1,33 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdAttribute;
+import br.com.clmDev.xsd_view.model.XsdContentHolder;
+import br.com.clmDev.xsd_view.model.XsdElement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Acumula o conteúdo de um complexType durante a passada única pelos filhos
+ * e o entrega na ordem de exibição: elementos de sequence, depois de choice,
+ * depois atributos diretos e de complexContent/simpleContent (extension, restriction).
+ */
+final class XsdContentBuffer {
+    final List<XsdElement> sequenceElements = new ArrayList<>();
+    final List<XsdElement> choiceElements = new ArrayList<>();
+    final List<XsdAttribute> directAttributes = new ArrayList<>();
+    final List<XsdAttribute> complexExtensionAttributes = new ArrayList<>();
+    final List<XsdAttribute> simpleExtensionAttributes = new ArrayList<>();
+    final List<XsdAttribute> complexRestrictionAttributes = new ArrayList<>();
+    final List<XsdAttribute> simpleRestrictionAttributes = new ArrayList<>();
+
+    void flushInto(XsdContentHolder holder) {
+        sequenceElements.forEach(holder::addContentElement);
+        choiceElements.forEach(holder::addContentElement);
+        directAttributes.forEach(holder::addAttribute);
+        complexExtensionAttributes.forEach(holder::addAttribute);
+        simpleExtensionAttributes.forEach(holder::addAttribute);
+        complexRestrictionAttributes.forEach(holder::addAttribute);
+        simpleRestrictionAttributes.forEach(holder::addAttribute);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,231 @@
+package br.com.clmDev.xsd_view.parser;
+
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bytes de um arquivo XSD lidos uma única vez e compartilhados por todos os motores de parse.
+ * Arquivos locais grandes são mapeados em memória; os demais vêm do VirtualFile, que aproveita
+ * o conteúdo em cache do VFS quando existe. A codificação é detectada pelo BOM e pelo prólogo XML.
+ */
+final class XsdFileContent {
+    /**
+     * Maior trecho que cabe num ByteBuffer; acima disso só o início do arquivo é carregado.
+     */
+    static final long MAX_LOADED_BYTES = Integer.MAX_VALUE - 8;
+
+    private static final long MAPPING_THRESHOLD = 4L * 1024 * 1024;
+    private static final int PROLOG_LIMIT = 256;
+    private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']*)[\"']");
+
+    private final ByteBuffer bytes;
+    private final long length;
+    private final Charset charset;
+
+    private XsdFileContent(ByteBuffer bytes, long length) {
+        this.bytes = bytes;
+        this.length = length;
+        this.charset = detectCharset(bytes);
+    }
+
+    /**
+     * @param file Arquivo XSD
+     * @return Conteúdo atual do arquivo, até {@link #MAX_LOADED_BYTES}
+     * @throws IOException se o arquivo não puder ser lido
+     */
+    static XsdFileContent read(VirtualFile file) throws IOException {
+        return read(file, Long.MAX_VALUE);
+    }
+
+    /**
+     * Carrega no máximo um byte além do limite: o parser lê até ultrapassá-lo e marca a estrutura
+     * como truncada, sem que o restante do arquivo seja lido.
+     * @param file Arquivo XSD
+     * @param maxBytes Limite de bytes do parse
+     * @return Início do arquivo, até maxBytes + 1 bytes
+     * @throws IOException se o arquivo não puder ser lido
+     */
+    static XsdFileContent read(VirtualFile file, long maxBytes) throws IOException {
+        long loadLimit = maxBytes < MAX_LOADED_BYTES ? maxBytes + 1 : MAX_LOADED_BYTES;
+        return new XsdFileContent(load(file, (int) loadLimit), file.getLength());
+    }
+
+    private static ByteBuffer load(VirtualFile file, int loadLimit) throws IOException {
+        // No Windows um arquivo mapeado não pode ser salvo enquanto o mapeamento existir
+        if (file.isInLocalFileSystem() && !SystemInfo.isWindows && file.getLength() >= MAPPING_THRESHOLD) {
+            try (FileChannel channel = FileChannel.open(file.toNioPath(), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), loadLimit));
+            } catch (UnsupportedOperationException e) {
+                // Sistema de arquivos sem mapeamento: ler pelo VFS
+            }
+        }
+        byte[] contents;
+        if (file.getLength() <= loadLimit) {
+            contents = file.contentsToByteArray();
+        } else {
+            // O VFS recusa carregar arquivos enormes por inteiro; lê-se só o início
+            try (InputStream stream = file.getInputStream()) {
+                contents = stream.readNBytes(loadLimit);
+            }
+        }
+        return ByteBuffer.wrap(contents, 0, Math.min(contents.length, loadLimit)).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return Novo stream sobre os mesmos bytes; cada motor de parse pode abrir o seu
+     */
+    InputStream openStream() {
+        return new ByteBufferInputStream(bytes.duplicate());
+    }
+
+    /**
+     * @return Tamanho do arquivo, que pode ser maior que os bytes carregados
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * @return Codificação detectada, ou null se o prólogo declara uma que o JDK não conhece;
+     *         nesse caso só o parser XML, lendo os bytes, pode aceitar ou recusar o arquivo
+     */
+    Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Lê só um trecho do arquivo, sem carregar o restante: direto do disco para arquivos locais,
+     * pulando o início do stream do VFS nos demais.
+     * @param file Arquivo XSD
+     * @param offset Offset do trecho em bytes
+     * @param length Tamanho do trecho em bytes
+     * @return Bytes do trecho
+     * @throws IOException se o arquivo não puder ser lido ou terminar antes do trecho
+     */
+    static byte[] readRange(VirtualFile file, long offset, int length) throws IOException {
+        if (file.isInLocalFileSystem()) {
+            try (FileChannel channel = FileChannel.open(file.toNioPath(), StandardOpenOption.READ)) {
+                ByteBuffer range = ByteBuffer.allocate(length);
+                while (range.hasRemaining()) {
+                    if (channel.read(range, offset + range.position()) < 0) {
+                        throw new EOFException("Trecho além do fim de " + file.getPath());
+                    }
+                }
+                return range.array();
+            } catch (UnsupportedOperationException e) {
+                // Sistema de arquivos sem caminho local: ler pelo VFS
+            }
+        }
+        try (InputStream stream = file.getInputStream()) {
+            stream.skipNBytes(offset);
+            byte[] range = stream.readNBytes(length);
+            if (range.length < length) {
+                throw new EOFException("Trecho além do fim de " + file.getPath());
+            }
+            return range;
+        }
+    }
+
+    /**
+     * @param file Arquivo XSD
+     * @return Codificação detectada pelo início do arquivo, como em {@link #getCharset()}
+     * @throws IOException se o arquivo não puder ser lido
+     */
+    static Charset detectCharset(VirtualFile file) throws IOException {
+        try (InputStream stream = file.getInputStream()) {
+            return detectCharset(ByteBuffer.wrap(stream.readNBytes(PROLOG_LIMIT)));
+        }
+    }
+
+    /**
+     * Detecta a codificação como o parser XML: BOM, depois a forma de "&lt;?" em UTF-16 e por fim
+     * o atributo encoding da declaração XML. Sem nenhum deles, UTF-8.
+     * @return Codificação, ou null se a declarada não existe no JDK
+     */
+    static Charset detectCharset(ByteBuffer bytes) {
+        int length = bytes.limit();
+        int b0 = length > 0 ? bytes.get(0) & 0xFF : -1;
+        int b1 = length > 1 ? bytes.get(1) & 0xFF : -1;
+        int b2 = length > 2 ? bytes.get(2) & 0xFF : -1;
+        int b3 = length > 3 ? bytes.get(3) & 0xFF : -1;
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if ((b0 == 0xFE && b1 == 0xFF) || (b0 == 0x00 && b1 == 0x3C && b2 == 0x00 && b3 == 0x3F)) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if ((b0 == 0xFF && b1 == 0xFE) || (b0 == 0x3C && b1 == 0x00 && b2 == 0x3F && b3 == 0x00)) {
+            return StandardCharsets.UTF_16LE;
+        }
+
+        // O prólogo é ASCII em todas as codificações compatíveis
+        byte[] head = new byte[Math.min(length, PROLOG_LIMIT)];
+        bytes.duplicate().get(head);
+        String prolog = new String(head, StandardCharsets.ISO_8859_1);
+        int end = prolog.indexOf("?>");
+        if (!prolog.startsWith("<?xml") || end < 0) {
+            return StandardCharsets.UTF_8;
+        }
+        Matcher matcher = ENCODING.matcher(prolog.substring(0, end));
+        if (!matcher.find()) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(matcher.group(1));
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            // Decodificar como UTF-8 esconderia o problema; o parser XML decide com os bytes originais
+            return null;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package br.com.clmDev.xsd_view.parser;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Documentação de um arquivo XSD na versão em que foi processado.
+ * As posições são offsets em bytes no arquivo: cada pedido lê e decodifica só o trecho, com a
+ * codificação detectada pelo prólogo como no parse. A leitura vai ao disco e deve ser feita fora da EDT.
+ */
+class XsdFileTextSource extends XsdCachingTextSource {
+    private static final Logger LOG = Logger.getInstance(XsdFileTextSource.class);
+
+    private static final String CHANGED_MESSAGE =
+            "(Documentação indisponível: o arquivo foi alterado depois de processado. Abra a visualização novamente.)";
+    private static final String UNREADABLE_MESSAGE = "(Documentação indisponível: não foi possível ler o arquivo.)";
+
+    private final VirtualFile file;
+    private final long modificationStamp;
+    private volatile Charset charset;
+
+    XsdFileTextSource(VirtualFile file) {
+        this.file = file;
+        this.modificationStamp = file.getModificationStamp();
+    }
+
+    @Override
+    String readFragment(int offset, int length) throws IOException {
+        if (!isCurrent()) {
+            // As posições guardadas não valem para o conteúdo novo
+            throw new IOException("arquivo alterado desde o parse");
+        }
+        Charset fileCharset = charset;
+        if (fileCharset == null) {
+            fileCharset = XsdFileContent.detectCharset(file);
+            if (fileCharset == null) {
+                throw new IOException("codificação não suportada no prólogo");
+            }
+            charset = fileCharset;
+        }
+        return new String(XsdFileContent.readRange(file, offset, length), fileCharset);
+    }
+
+    @Override
+    String unavailable(IOException e) {
+        LOG.debug("Não foi possível ler a documentação de " + file.getPath() + ": " + e.getMessage());
+        return isCurrent() ? UNREADABLE_MESSAGE : CHANGED_MESSAGE;
+    }
+
+    private boolean isCurrent() {
+        return file.isValid() && file.getModificationStamp() == modificationStamp;
+    }
+
+    /**
+     * Origens do mesmo arquivo na mesma versão leem os mesmos bytes.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof XsdFileTextSource)) {
+            return false;
+        }
+        XsdFileTextSource other = (XsdFileTextSource) o;
+        return file.equals(other.file) && modificationStamp == other.modificationStamp;
+    }
+
+    @Override
+    public int hashCode() {
+        return file.hashCode() * 31 + Long.hashCode(modificationStamp);
+    }
+}
\ No newline at end of file
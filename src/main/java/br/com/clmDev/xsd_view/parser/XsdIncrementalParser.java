@@ -0,0 +1,269 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdComplexType;
+import br.com.clmDev.xsd_view.model.XsdElement;
+import br.com.clmDev.xsd_view.model.XsdStructure;
+import br.com.clmDev.xsd_view.model.XsdType;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Mantém um XsdStructure sincronizado com o texto do editor refazendo o parse apenas
+ * das declarações de topo (xs:element / xs:complexType) atingidas por cada edição.
+ * Edições fora de uma única declaração, ou que mudam a forma do schema, pedem parse completo.
+ * Todo parse passa pelo XsdParser recebido, com o motor e os limites dele.
+ */
+public class XsdIncrementalParser {
+
+    /**
+     * Declaração de topo substituída: o objeto antigo e o novo que ocupa o seu lugar no XsdStructure.
+     */
+    public static final class Replacement {
+        private final XsdType oldValue;
+        private final XsdType newValue;
+
+        Replacement(XsdType oldValue, XsdType newValue) {
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        public XsdType getOldValue() {
+            return oldValue;
+        }
+
+        public XsdType getNewValue() {
+            return newValue;
+        }
+    }
+
+    private final XsdStructure structure;
+    private final XsdTopLevelScanner.Result scan;
+    private final int[] structureIndexes;
+    private final boolean[] dirty;
+    private boolean fullReparseNeeded;
+
+    /**
+     * Associa uma estrutura já processada ao texto de onde ela veio.
+     * Se o texto não corresponder à estrutura, ou se ela foi truncada por um limite, o próximo refresh
+     * fará parse completo: os limites valem para o schema inteiro, não para cada declaração.
+     * @param structure Estrutura do XSD
+     * @param text Texto atual do documento
+     */
+    public XsdIncrementalParser(XsdStructure structure, CharSequence text) {
+        this.structure = structure;
+        this.scan = XsdTopLevelScanner.scan(text);
+        int slotCount = scan != null ? scan.slots.size() : 0;
+        this.structureIndexes = new int[slotCount];
+        this.dirty = new boolean[slotCount];
+        this.fullReparseNeeded = scan == null || structure.isTruncated() || !mapSlotsToStructure();
+    }
+
+    /**
+     * Faz o parse completo do texto e prepara o parse incremental das próximas edições.
+     * @param parser Parser com o motor e os limites a usar
+     * @param text Texto imutável do documento
+     * @param indicator Indicador de progresso (opcional)
+     * @return Parser incremental com a nova estrutura
+     * @throws ProcessCanceledException se o indicador for cancelado durante o parse
+     */
+    public static XsdIncrementalParser parseFull(XsdParser parser, CharSequence text, ProgressIndicator indicator) {
+        return new XsdIncrementalParser(parser.parseXsd(text, indicator), text);
+    }
+
+    public XsdStructure getStructure() {
+        return structure;
+    }
+
+    public boolean needsFullReparse() {
+        return fullReparseNeeded;
+    }
+
+    /**
+     * Registra uma edição do documento: marca a declaração atingida e desloca as seguintes.
+     * @param offset Início da edição
+     * @param oldLength Tamanho do texto removido
+     * @param newLength Tamanho do texto inserido
+     */
+    public void documentChanged(int offset, int oldLength, int newLength) {
+        if (fullReparseNeeded) {
+            return;
+        }
+        List<XsdTopLevelScanner.Slot> slots = scan.slots;
+        int target = -1;
+        for (int i = slots.size() - 1; i >= 0; i--) {
+            if (slots.get(i).start <= offset) {
+                target = i;
+                break;
+            }
+        }
+        if (target < 0 || offset + oldLength > slots.get(target).end) {
+            // Edição no prólogo, na tag do schema ou além do fim da declaração atingida
+            fullReparseNeeded = true;
+            return;
+        }
+
+        int delta = newLength - oldLength;
+        dirty[target] = true;
+        slots.get(target).end += delta;
+        for (int i = target + 1; i < slots.size(); i++) {
+            slots.get(i).start += delta;
+            slots.get(i).end += delta;
+        }
+    }
+
+    /**
+     * Declarações marcadas copiadas no momento do pedido, para que o parse rode fora da EDT
+     * enquanto o editor continua deslocando os trechos originais.
+     */
+    public static final class DirtySlots {
+        private final String rootStartTag;
+        private final String rootEndTag;
+        private final int[] slotIndexes;
+        private final XsdTopLevelScanner.Kind[] kinds;
+        private final int[] starts;
+        private final int[] ends;
+        private final XsdStructure[] parsed;
+
+        private DirtySlots(XsdTopLevelScanner.Result scan, List<Integer> indexes) {
+            this.rootStartTag = scan.rootStartTag;
+            this.rootEndTag = scan.rootEndTag;
+            int count = indexes.size();
+            this.slotIndexes = new int[count];
+            this.kinds = new XsdTopLevelScanner.Kind[count];
+            this.starts = new int[count];
+            this.ends = new int[count];
+            this.parsed = new XsdStructure[count];
+            for (int i = 0; i < count; i++) {
+                XsdTopLevelScanner.Slot slot = scan.slots.get(indexes.get(i));
+                slotIndexes[i] = indexes.get(i);
+                kinds[i] = slot.kind;
+                starts[i] = slot.start;
+                ends[i] = slot.end;
+            }
+        }
+
+        public boolean isEmpty() {
+            return slotIndexes.length == 0;
+        }
+
+        /**
+         * Faz o parse dos trechos copiados. Não toca no XsdStructure, então pode rodar em qualquer thread.
+         * Trechos ainda mal formados (edição em andamento) ficam sem resultado.
+         * @param parser Parser com o motor e os limites a usar
+         * @param text Texto do documento na mesma versão em que os trechos foram copiados
+         */
+        public void parse(XsdParser parser, CharSequence text) {
+            for (int i = 0; i < slotIndexes.length; i++) {
+                StringBuilder snippet = new StringBuilder(rootStartTag.length() + (ends[i] - starts[i]) + rootEndTag.length());
+                snippet.append(rootStartTag)
+                        .append(text, starts[i], ends[i])
+                        .append(rootEndTag);
+                try {
+                    parsed[i] = parser.parseXsd(snippet.toString(), null);
+                } catch (ProcessCanceledException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    parsed[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copia as declarações marcadas para um parse fora da EDT.
+     * @return Declarações a refazer, ou null se for necessário parse completo
+     */
+    public DirtySlots collectDirty() {
+        if (fullReparseNeeded) {
+            return null;
+        }
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < dirty.length; i++) {
+            if (dirty[i]) {
+                indexes.add(i);
+            }
+        }
+        return new DirtySlots(scan, indexes);
+    }
+
+    /**
+     * Substitui no XsdStructure as declarações refeitas por {@link DirtySlots#parse}.
+     * Só pode ser chamado se o documento não mudou desde {@link #collectDirty()}.
+     * @return Substituições aplicadas, ou null se for necessário parse completo
+     */
+    public List<Replacement> applyDirty(DirtySlots slots) {
+        if (fullReparseNeeded) {
+            return null;
+        }
+        List<Replacement> replacements = new ArrayList<>();
+        for (int j = 0; j < slots.slotIndexes.length; j++) {
+            XsdStructure partial = slots.parsed[j];
+            if (partial == null) {
+                continue;
+            }
+            if (partial.isTruncated()) {
+                // Trecho acima dos limites: o parse completo trunca a estrutura e exibe o aviso
+                fullReparseNeeded = true;
+                return null;
+            }
+            int i = slots.slotIndexes[j];
+            XsdTopLevelScanner.Kind kind = slots.kinds[j];
+            int expectedElements = kind == XsdTopLevelScanner.Kind.ELEMENT ? 1 : 0;
+            int expectedComplexTypes = kind == XsdTopLevelScanner.Kind.COMPLEX_TYPE ? 1 : 0;
+            if (partial.getRootElements().size() != expectedElements ||
+                    partial.getComplexTypes().size() != expectedComplexTypes) {
+                // A edição criou, removeu ou trocou declarações de topo
+                fullReparseNeeded = true;
+                return null;
+            }
+
+            dirty[i] = false;
+            if (kind == XsdTopLevelScanner.Kind.ELEMENT) {
+                XsdElement newElement = partial.getRootElements().get(0);
+                XsdElement oldElement = structure.replaceElement(structureIndexes[i], newElement);
+                replacements.add(new Replacement(oldElement, newElement));
+            } else if (kind == XsdTopLevelScanner.Kind.COMPLEX_TYPE) {
+                XsdComplexType newType = partial.getComplexTypes().get(0);
+                XsdComplexType oldType = structure.replaceComplexType(structureIndexes[i], newType);
+                replacements.add(new Replacement(oldType, newType));
+            }
+        }
+        return Collections.unmodifiableList(replacements);
+    }
+
+    /**
+     * Refaz o parse das declarações marcadas na thread atual e as substitui no XsdStructure.
+     * @param parser Parser com o motor e os limites a usar
+     * @param text Texto atual do documento
+     * @return Substituições aplicadas, ou null se for necessário parse completo
+     */
+    public List<Replacement> reparseDirty(XsdParser parser, CharSequence text) {
+        DirtySlots slots = collectDirty();
+        if (slots == null) {
+            return null;
+        }
+        slots.parse(parser, text);
+        return applyDirty(slots);
+    }
+
+    private boolean mapSlotsToStructure() {
+        int elementIndex = 0;
+        int complexTypeIndex = 0;
+        for (int i = 0; i < scan.slots.size(); i++) {
+            XsdTopLevelScanner.Kind kind = scan.slots.get(i).kind;
+            if (kind == XsdTopLevelScanner.Kind.ELEMENT) {
+                structureIndexes[i] = elementIndex++;
+            } else if (kind == XsdTopLevelScanner.Kind.COMPLEX_TYPE) {
+                structureIndexes[i] = complexTypeIndex++;
+            } else {
+                structureIndexes[i] = -1;
+            }
+        }
+        return elementIndex == structure.getRootElements().size() &&
+                complexTypeIndex == structure.getComplexTypes().size();
+    }
+}
\ No newline at end of file
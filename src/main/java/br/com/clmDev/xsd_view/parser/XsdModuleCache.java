@@ -0,0 +1,196 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdStructure;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Cache em memória, compartilhado por todas as visualizações e projetos, dos schemas
+ * referenciados via xs:include / xs:import (ex.: tiposBasico, DFeTiposBasicos).
+ * Cada módulo é identificado pelo caminho e pelo carimbo de modificação do arquivo,
+ * processado uma única vez e mantido enquanto houver visualizações usando-o.
+ * Módulos sem uso ficam disponíveis até o limite de ociosos, com descarte LRU.
+ */
+public class XsdModuleCache {
+    private static final int DEFAULT_MAX_IDLE_MODULES = 32;
+
+    private final int maxIdleModules;
+    private final Map<ModuleKey, Entry> entries = new HashMap<>();
+    // Módulos sem referências, do menos para o mais recentemente liberado
+    private final LinkedHashMap<ModuleKey, Entry> idle = new LinkedHashMap<>();
+
+    public XsdModuleCache() {
+        this(DEFAULT_MAX_IDLE_MODULES);
+    }
+
+    public XsdModuleCache(int maxIdleModules) {
+        this.maxIdleModules = maxIdleModules;
+    }
+
+    public static XsdModuleCache getInstance() {
+        return ApplicationManager.getApplication().getService(XsdModuleCache.class);
+    }
+
+    /**
+     * Referência a um módulo em uso. Deve ser liberada uma única vez quando a visualização fechar.
+     */
+    public final class Handle {
+        private final Entry entry;
+        private boolean released;
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        public XsdStructure getStructure() {
+            return entry.structure;
+        }
+
+        public void release() {
+            synchronized (XsdModuleCache.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                releaseEntry(entry);
+            }
+        }
+    }
+
+    /**
+     * Obtém o módulo do cache ou o processa com o loader, incrementando a contagem de referências.
+     * Chamadas concorrentes para o mesmo módulo esperam um único parse.
+     * Os XsdStructure devolvidos são compartilhados e não devem ser alterados.
+     * @param file Arquivo XSD referenciado
+     * @param loader Parse usado quando o módulo não está em memória
+     * @return Referência ao módulo
+     */
+    public Handle acquire(VirtualFile file, Supplier<XsdStructure> loader) {
+        ModuleKey key = new ModuleKey(file.getPath(), file.getModificationStamp());
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                dropStaleVersions(key.path);
+                entry = new Entry(key);
+                entries.put(key, entry);
+            }
+            idle.remove(key);
+            entry.refCount++;
+        }
+
+        try {
+            entry.load(loader);
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                releaseEntry(entry);
+            }
+            throw e;
+        }
+        return new Handle(entry);
+    }
+
+    /**
+     * @return Quantidade de módulos em memória (em uso e ociosos)
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Descarta os módulos que não estão em uso.
+     */
+    public synchronized void clearIdle() {
+        for (ModuleKey key : idle.keySet()) {
+            entries.remove(key);
+        }
+        idle.clear();
+    }
+
+    private void releaseEntry(Entry entry) {
+        if (--entry.refCount > 0 || entries.get(entry.key) != entry) {
+            return;
+        }
+        if (!entry.isLoaded()) {
+            // Parse falhou ou foi cancelado: não manter a entrada
+            entries.remove(entry.key);
+            return;
+        }
+        idle.put(entry.key, entry);
+        Iterator<Map.Entry<ModuleKey, Entry>> iterator = idle.entrySet().iterator();
+        while (idle.size() > maxIdleModules && iterator.hasNext()) {
+            entries.remove(iterator.next().getKey());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Uma nova versão do arquivo torna as antigas inúteis; as que ainda estão em uso
+     * saem do índice e deixam de existir quando a última referência for liberada.
+     */
+    private void dropStaleVersions(String path) {
+        Iterator<Map.Entry<ModuleKey, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            ModuleKey key = iterator.next().getKey();
+            if (key.path.equals(path)) {
+                iterator.remove();
+                idle.remove(key);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final ModuleKey key;
+        private int refCount;
+        private volatile XsdStructure structure;
+
+        Entry(ModuleKey key) {
+            this.key = key;
+        }
+
+        boolean isLoaded() {
+            return structure != null;
+        }
+
+        void load(Supplier<XsdStructure> loader) {
+            if (structure != null) {
+                return;
+            }
+            synchronized (this) {
+                if (structure == null) {
+                    structure = loader.get();
+                }
+            }
+        }
+    }
+
+    private static final class ModuleKey {
+        private final String path;
+        private final long stamp;
+
+        ModuleKey(String path, long stamp) {
+            this.path = path;
+            this.stamp = stamp;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ModuleKey)) {
+                return false;
+            }
+            ModuleKey other = (ModuleKey) o;
+            return stamp == other.stamp && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + Long.hashCode(stamp);
+        }
+    }
+}
\ No newline at end of file
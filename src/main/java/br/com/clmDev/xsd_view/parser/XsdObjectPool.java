@@ -0,0 +1,54 @@
+package br.com.clmDev.xsd_view.parser;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Pool de objetos caros de configurar e que não podem ser usados por duas threads ao mesmo tempo
+ * (DocumentBuilder, XMLInputFactory). Cada parse pega um objeto, usa sozinho e o devolve ao terminar;
+ * sem objeto livre, um novo é criado, e os que excedem o limite de ociosos são descartados.
+ */
+final class XsdObjectPool<T> {
+    private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final Supplier<T> factory;
+    private final Consumer<T> reset;
+    private final int maxIdle;
+
+    /**
+     * @param factory Cria e configura um objeto novo
+     * @param reset Devolve o objeto ao estado inicial antes de voltar ao pool
+     * @param maxIdle Quantidade máxima de objetos livres guardados
+     */
+    XsdObjectPool(Supplier<T> factory, Consumer<T> reset, int maxIdle) {
+        this.factory = factory;
+        this.reset = reset;
+        this.maxIdle = maxIdle;
+    }
+
+    T acquire() {
+        T object = idle.poll();
+        if (object == null) {
+            return factory.get();
+        }
+        idleCount.decrementAndGet();
+        return object;
+    }
+
+    void release(T object) {
+        try {
+            reset.accept(object);
+        } catch (RuntimeException e) {
+            // Objeto em estado desconhecido: descartar
+            return;
+        }
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(object);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+}
\ No newline at end of file
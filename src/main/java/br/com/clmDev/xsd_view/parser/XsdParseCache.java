@@ -0,0 +1,209 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdStructure;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Cache em disco dos XsdStructure já processados, mantido no diretório de sistema da IDE
+ * para sobreviver a reinícios. Cada entrada é validada pelo caminho, data de modificação
+ * e tamanho do arquivo; o diretório tem limite de tamanho com descarte LRU.
+ */
+public class XsdParseCache {
+    private static final Logger LOG = Logger.getInstance(XsdParseCache.class);
+
+    private static final int MAGIC = 0x58534443; // "XSDC"
+    private static final String ENTRY_EXTENSION = ".bin";
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final Path cacheDir;
+    private final long maxBytes;
+
+    public XsdParseCache() {
+        this(Paths.get(PathManager.getSystemPath(), "xsd-view", "parse-cache"), DEFAULT_MAX_BYTES);
+    }
+
+    public XsdParseCache(Path cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+    }
+
+    public static XsdParseCache getInstance() {
+        return ApplicationManager.getApplication().getService(XsdParseCache.class);
+    }
+
+    /**
+     * Retorna a estrutura do cache quando o arquivo não mudou; caso contrário faz o parse e grava no cache.
+     * @param file Arquivo XSD
+     * @param parser Parser usado quando não há entrada válida
+     * @return Estrutura do XSD
+     */
+    public XsdStructure parse(VirtualFile file, XsdParser parser) {
+        return parse(file, parser, null);
+    }
+
+    /**
+     * Igual a {@link #parse(VirtualFile, XsdParser)}, reportando o progresso do parse no indicador.
+     * @param file Arquivo XSD
+     * @param parser Parser usado quando não há entrada válida
+     * @param indicator Indicador de progresso (opcional)
+     * @return Estrutura do XSD
+     */
+    public XsdStructure parse(VirtualFile file, XsdParser parser, ProgressIndicator indicator) {
+        XsdStructure cached = get(file);
+        if (cached != null) {
+            return cached;
+        }
+        XsdStructure structure = parser.parseXsd(file, indicator);
+        if (!structure.isTruncated()) {
+            // Parcial depende dos limites em vigor: não guardar
+            put(file, structure);
+        }
+        return structure;
+    }
+
+    /**
+     * Lê a entrada do arquivo se ela existir e ainda corresponder ao conteúdo atual.
+     * @param file Arquivo XSD
+     * @return Estrutura em cache ou null
+     */
+    public XsdStructure get(VirtualFile file) {
+        Path entry = entryPath(file);
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            if (in.readInt() != MAGIC || in.readInt() != XsdStructureSerializer.FORMAT_VERSION) {
+                return null;
+            }
+            if (!file.getPath().equals(in.readUTF()) ||
+                    in.readLong() != file.getTimeStamp() ||
+                    in.readLong() != file.getLength()) {
+                return null;
+            }
+            XsdStructure structure = XsdStructureSerializer.read(in, new XsdFileTextSource(file));
+            touch(entry);
+            return structure;
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Entrada de cache inválida para " + file.getPath() + ": " + e.getMessage());
+            deleteQuietly(entry);
+            return null;
+        }
+    }
+
+    /**
+     * Grava a estrutura no cache e descarta as entradas menos usadas se o limite for excedido.
+     * @param file Arquivo XSD de origem
+     * @param structure Estrutura processada
+     */
+    public synchronized void put(VirtualFile file, XsdStructure structure) {
+        Path entry = entryPath(file);
+        Path temp = entry.resolveSibling(entry.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(cacheDir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(XsdStructureSerializer.FORMAT_VERSION);
+                out.writeUTF(file.getPath());
+                out.writeLong(file.getTimeStamp());
+                out.writeLong(file.getLength());
+                XsdStructureSerializer.write(structure, out);
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evictIfNeeded();
+        } catch (IOException e) {
+            LOG.warn("Não foi possível gravar o cache do XSD " + file.getPath(), e);
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Remove a entrada de um arquivo, se existir.
+     * @param file Arquivo XSD
+     */
+    public void invalidate(VirtualFile file) {
+        deleteQuietly(entryPath(file));
+    }
+
+    private void evictIfNeeded() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            files.filter(path -> path.getFileName().toString().endsWith(ENTRY_EXTENSION)).forEach(entries::add);
+        }
+
+        long totalBytes = 0;
+        for (Path entry : entries) {
+            totalBytes += Files.size(entry);
+        }
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+
+        // Menos usadas primeiro: o acesso atualiza a data de modificação da entrada
+        entries.sort(Comparator.comparing(XsdParseCache::lastModified));
+        for (Path entry : entries) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            long size = Files.size(entry);
+            if (deleteQuietly(entry)) {
+                totalBytes -= size;
+            }
+        }
+    }
+
+    private Path entryPath(VirtualFile file) {
+        return cacheDir.resolve(hash(file.getPath()) + ENTRY_EXTENSION);
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Apenas afeta a ordem de descarte
+        }
+    }
+
+    private static FileTime lastModified(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static boolean deleteQuietly(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
\ No newline at end of file
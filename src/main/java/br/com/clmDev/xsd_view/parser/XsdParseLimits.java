@@ -0,0 +1,87 @@
+package br.com.clmDev.xsd_view.parser;
+
+/**
+ * Limites de recursos de um parse, para que um XSD enorme ou malicioso não trave a IDE.
+ * Ao atingir um limite o motor StAX para e devolve a estrutura lida até ali, marcada como truncada.
+ * Configuráveis por propriedades de sistema; zero ou valor negativo desliga o limite.
+ * Ex.: -Dxsdview.parser.maxNodes=200000 -Dxsdview.parser.maxMillis=30000
+ */
+public final class XsdParseLimits {
+    public static final String MAX_BYTES_PROPERTY = "xsdview.parser.maxBytes";
+    public static final String MAX_DEPTH_PROPERTY = "xsdview.parser.maxDepth";
+    public static final String MAX_NODES_PROPERTY = "xsdview.parser.maxNodes";
+    public static final String MAX_MILLIS_PROPERTY = "xsdview.parser.maxMillis";
+
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    private static final long DEFAULT_MAX_DEPTH = 50_000;
+    private static final long DEFAULT_MAX_NODES = 5_000_000;
+    private static final long DEFAULT_MAX_MILLIS = 120_000;
+
+    public static final XsdParseLimits UNLIMITED =
+            new XsdParseLimits(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    private final long maxBytes;
+    private final int maxDepth;
+    private final int maxNodes;
+    private final long maxMillis;
+
+    /**
+     * @param maxBytes Bytes (ou caracteres, para texto do editor) lidos do arquivo
+     * @param maxDepth Níveis de xs:element aninhados
+     * @param maxNodes Elementos, tipos complexos e atributos criados (a mesma contagem de XsdSchemaSummary)
+     * @param maxMillis Tempo total do parse em milissegundos
+     */
+    public XsdParseLimits(long maxBytes, int maxDepth, int maxNodes, long maxMillis) {
+        this.maxBytes = maxBytes;
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * @return Limites das propriedades de sistema, com os padrões para as que não foram definidas
+     */
+    public static XsdParseLimits fromSystemProperties() {
+        return new XsdParseLimits(
+                limit(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES, Long.MAX_VALUE),
+                (int) limit(MAX_DEPTH_PROPERTY, DEFAULT_MAX_DEPTH, Integer.MAX_VALUE),
+                (int) limit(MAX_NODES_PROPERTY, DEFAULT_MAX_NODES, Integer.MAX_VALUE),
+                limit(MAX_MILLIS_PROPERTY, DEFAULT_MAX_MILLIS, Long.MAX_VALUE));
+    }
+
+    private static long limit(String property, long defaultValue, long unlimited) {
+        String configured = System.getProperty(property);
+        if (configured == null) {
+            return defaultValue;
+        }
+        try {
+            long value = Long.parseLong(configured.trim());
+            return value > 0 ? Math.min(value, unlimited) : unlimited;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return Os mesmos limites com outro limite de bytes
+     */
+    XsdParseLimits withMaxBytes(long maxBytes) {
+        return new XsdParseLimits(maxBytes, maxDepth, maxNodes, maxMillis);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+}
\ No newline at end of file
@@ -1,94 +1,337 @@
 package br.com.clmDev.xsd_view.parser;
 
 import br.com.clmDev.xsd_view.model.*;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.text.CharSequenceReader;
 import org.w3c.dom.*;
+import org.xml.sax.InputSource;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.FactoryConfigurationError;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashSet;
-import java.util.Set;
-
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Parser de arquivos XSD, sem estado entre chamadas: o estado de cada parse fica em objetos
+ * criados para ele, e os DocumentBuilder e XMLInputFactory configurados vêm de pools compartilhados.
+ * Uma mesma instância pode ser usada por várias threads ao mesmo tempo (tool windows, índices, cargas em lote).
+ */
 public class XsdParser {
+    private static final Logger LOG = Logger.getInstance(XsdParser.class);
     private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
-    private Set<Element> processedElements = new HashSet<>();
+
+    /**
+     * Propriedade de sistema para escolher o motor de parse (stax ou dom).
+     * Ex.: -Dxsdview.parser.engine=dom para comparar com o motor DOM original.
+     */
+    public static final String ENGINE_PROPERTY = "xsdview.parser.engine";
+
+    /**
+     * Motores de parse disponíveis.
+     * STAX percorre o arquivo em uma única passada sem montar DOM; DOM mantém o comportamento original.
+     */
+    public enum Engine {
+        STAX,
+        DOM
+    }
+
+    /**
+     * Implementações de DocumentBuilderFactory para o motor DOM, tentadas em ordem.
+     * A primeira que cria um DocumentBuilder é usada até o fim da sessão da IDE.
+     */
+    private enum DomBackend {
+        // Implementação encontrada pelo JAXP (pode vir de outro plugin), com entidades externas desligadas
+        DEFAULT {
+            @Override
+            DocumentBuilderFactory newFactory() throws ParserConfigurationException {
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                factory.setNamespaceAware(true);
+                factory.setValidating(false);
+                factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+                factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+                factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+                return factory;
+            }
+        },
+        // Xerces interno do JDK, pedido pelo nome da classe sem alterar a propriedade de sistema global
+        JDK_XERCES {
+            @Override
+            DocumentBuilderFactory newFactory() {
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance(
+                        "com.sun.org.apache.xerces.internal.jaxp.DocumentBuilderFactoryImpl", null);
+                factory.setNamespaceAware(true);
+                factory.setValidating(false);
+                return factory;
+            }
+        },
+        JDK_DEFAULT {
+            @Override
+            DocumentBuilderFactory newFactory() {
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newDefaultInstance();
+                factory.setNamespaceAware(true);
+                return factory;
+            }
+        };
+
+        abstract DocumentBuilderFactory newFactory() throws ParserConfigurationException;
+    }
+
+    private static volatile DomBackend domBackend;
+
+    private static final XsdObjectPool<DocumentBuilder> DOM_BUILDERS = new XsdObjectPool<>(
+            XsdParser::createDocumentBuilder, DocumentBuilder::reset, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Tratador de um filho direto de complexType, escolhido pelo nome local do filho.
+     */
+    private interface ContentHandler {
+        void handle(Element child, XsdContentBuffer buffer, Deque<PendingElement> pending, XsdStructure structure);
+    }
+
+    /**
+     * Elemento já criado cujo conteúdo (documentação e tipo inline) ainda será lido.
+     * Os aninhamentos element → complexType → sequence → element viram uma pilha destes
+     * em vez de recursão, então a profundidade do schema não depende da pilha da thread.
+     */
+    private static final class PendingElement {
+        final Element element;
+        final XsdElement xsdElement;
+
+        PendingElement(Element element, XsdElement xsdElement) {
+            this.element = element;
+            this.xsdElement = xsdElement;
+        }
+    }
+
+    private final Engine engine;
+    private final XsdParseLimits limits;
+    private final Map<String, ContentHandler> contentHandlers = Collections.unmodifiableMap(createContentHandlers());
+
+    public XsdParser() {
+        this(defaultEngine());
+    }
+
+    public XsdParser(Engine engine) {
+        this(engine, XsdParseLimits.fromSystemProperties());
+    }
+
+    /**
+     * @param limits Limites de recursos; o motor STAX devolve a estrutura parcial ao atingir um deles
+     */
+    public XsdParser(Engine engine, XsdParseLimits limits) {
+        this.engine = engine;
+        this.limits = limits;
+    }
+
+    /**
+     * @return Parser compartilhado da aplicação, com o motor padrão
+     */
+    public static XsdParser getInstance() {
+        return ApplicationManager.getApplication().getService(XsdParser.class);
+    }
+
+    private static Engine defaultEngine() {
+        String configured = System.getProperty(ENGINE_PROPERTY);
+        if (configured != null && "dom".equalsIgnoreCase(configured.trim())) {
+            return Engine.DOM;
+        }
+        return Engine.STAX;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public XsdParseLimits getLimits() {
+        return limits;
+    }
 
     public XsdStructure parseXsd(VirtualFile file) {
-        InputStream inputStream = null;
+        return parseXsd(file, null);
+    }
+
+    /**
+     * Faz o parse reportando progresso e permitindo cancelamento.
+     * O motor STAX informa bytes lidos e elementos criados; o DOM apenas verifica o cancelamento.
+     * @param file Arquivo XSD
+     * @param indicator Indicador de progresso (opcional)
+     * @return Estrutura do XSD
+     * @throws ProcessCanceledException se o indicador for cancelado durante o parse
+     */
+    public XsdStructure parseXsd(VirtualFile file, ProgressIndicator indicator) {
+        // Além do que cabe em memória o arquivo também é tratado como acima do limite
+        XsdParseLimits fileLimits = limits.getMaxBytes() < XsdFileContent.MAX_LOADED_BYTES
+                ? limits : limits.withMaxBytes(XsdFileContent.MAX_LOADED_BYTES - 1);
+        if (engine == Engine.DOM && file.getLength() > fileLimits.getMaxBytes()) {
+            return tooLargeForDom(file.getLength(), fileLimits.getMaxBytes());
+        }
+        XsdFileContent content;
         try {
-            // Reset processed elements for each parse
-            processedElements.clear();
-            
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            factory.setValidating(false);
-            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            inputStream = file.getInputStream();
-            Document doc = builder.parse(inputStream);
-            Element root = doc.getDocumentElement();
+            content = XsdFileContent.read(file, fileLimits.getMaxBytes());
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao ler o XSD: " + e.getMessage(), e);
+        }
+        if (engine == Engine.STAX) {
+            return parseWithStax(file, content, fileLimits, indicator);
+        }
+        return parseWithDom(new InputSource(content.openStream()), indicator);
+    }
 
-            return buildStructure(root);
+    /**
+     * Faz o parse do conteúdo atual do editor, incluindo alterações ainda não salvas.
+     * @param document Documento do arquivo XSD
+     * @param indicator Indicador de progresso (opcional)
+     * @return Estrutura do XSD
+     */
+    public XsdStructure parseXsd(Document document, ProgressIndicator indicator) {
+        return parseXsd(document.getImmutableCharSequence(), indicator);
+    }
 
-        } catch (javax.xml.parsers.FactoryConfigurationError e) {
-            return parseWithFallback(file);
+    /**
+     * Faz o parse de texto já decodificado. O texto é lido por um Reader sobre o próprio
+     * CharSequence, sem cópia para String nem conversão para bytes.
+     * @param text Texto do XSD; precisa ser imutável, pois a documentação é lida dele sob demanda
+     * @param indicator Indicador de progresso (opcional)
+     * @return Estrutura do XSD
+     */
+    public XsdStructure parseXsd(CharSequence text, ProgressIndicator indicator) {
+        if (engine == Engine.DOM) {
+            if (text.length() > limits.getMaxBytes()) {
+                return tooLargeForDom(text.length(), limits.getMaxBytes());
+            }
+            return parseWithDom(new InputSource(new CharSequenceReader(text)), indicator);
+        }
+        try {
+            return new XsdStaxParser(indicator, limits).parse(new CharSequenceReader(text), XsdCachingTextSource.of(text));
+        } catch (ProcessCanceledException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Erro ao fazer parse do XSD: " + e.getMessage(), e);
-        } finally {
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (Exception e) {
-                    // Ignorar erro ao fechar
-                }
+        }
+    }
+
+    private XsdStructure parseWithStax(VirtualFile file, XsdFileContent content, XsdParseLimits fileLimits,
+                                       ProgressIndicator indicator) {
+        try (InputStream inputStream = content.openStream()) {
+            if (content.getCharset() == null) {
+                // Codificação desconhecida pelo JDK: o parser lê a declaração e aceita ou relata o erro,
+                // e a documentação é carregada durante o parse, sem posições no texto
+                return new XsdStaxParser(indicator, fileLimits).parse(inputStream, content.length());
             }
+            // A documentação fica como posição no arquivo e só é lida quando exibida
+            return new XsdStaxParser(indicator, fileLimits).parse(inputStream, content.getCharset(), content.length(),
+                    new XsdFileTextSource(file));
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Erro ao fazer parse do XSD: " + e.getMessage(), e);
         }
     }
 
-    private XsdStructure parseWithFallback(VirtualFile file) {
+    /**
+     * O DOM monta o documento inteiro antes de qualquer nó, então não há resultado parcial:
+     * acima do limite de bytes o arquivo nem é lido. Os demais limites valem só para o motor STAX.
+     */
+    private XsdStructure tooLargeForDom(long length, long maxBytes) {
+        XsdStructure structure = new XsdStructure();
+        structure.markTruncated(String.format("Estrutura truncada em 0 nós (%d bytes, limite de %d bytes)",
+                length, maxBytes));
+        return structure;
+    }
+
+    /**
+     * O DOM não reporta progresso; o indicador só é verificado antes e depois do parse.
+     */
+    private XsdStructure parseWithDom(InputSource source, ProgressIndicator indicator) {
+        if (indicator != null) {
+            indicator.setIndeterminate(true);
+            indicator.checkCanceled();
+        }
+        XsdStructure structure;
+        DocumentBuilder builder = DOM_BUILDERS.acquire();
         try {
-            processedElements.clear();
-            System.setProperty("javax.xml.parsers.DocumentBuilderFactory",
-                    "com.sun.org.apache.xerces.internal.jaxp.DocumentBuilderFactoryImpl");
+            org.w3c.dom.Document doc = builder.parse(source);
+            Element root = doc.getDocumentElement();
 
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            factory.setValidating(false);
+            structure = buildStructure(root);
 
-            DocumentBuilder builder = factory.newDocumentBuilder();
+        } catch (Exception e) {
+            throw new RuntimeException("Erro ao fazer parse do XSD: " + e.getMessage(), e);
+        } finally {
+            DOM_BUILDERS.release(builder);
+        }
+        if (indicator != null) {
+            indicator.checkCanceled();
+        }
+        return structure;
+    }
 
-            try (InputStream inputStream = file.getInputStream()) {
-                Document doc = builder.parse(inputStream);
-                Element root = doc.getDocumentElement();
-                return buildStructure(root);
+    /**
+     * Escolhe a implementação do DOM na primeira vez que é necessária.
+     */
+    private static DomBackend domBackend() {
+        DomBackend backend = domBackend;
+        if (backend != null) {
+            return backend;
+        }
+        synchronized (XsdParser.class) {
+            if (domBackend == null) {
+                domBackend = selectDomBackend();
             }
-
-        } catch (Exception fallbackException) {
-            return parseSimple(file);
+            return domBackend;
         }
     }
 
-    private XsdStructure parseSimple(VirtualFile file) {
+    private static DocumentBuilder createDocumentBuilder() {
         try {
-            processedElements.clear();
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newDefaultInstance();
-            factory.setNamespaceAware(true);
-
-            DocumentBuilder builder = factory.newDocumentBuilder();
+            return domBackend().newFactory().newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException("Erro ao criar o DocumentBuilder: " + e.getMessage(), e);
+        }
+    }
 
-            try (InputStream inputStream = file.getInputStream()) {
-                Document doc = builder.parse(inputStream);
-                Element root = doc.getDocumentElement();
-                return buildStructure(root);
+    private static DomBackend selectDomBackend() {
+        Throwable lastError = null;
+        for (DomBackend candidate : DomBackend.values()) {
+            try {
+                candidate.newFactory().newDocumentBuilder();
+                if (candidate != DomBackend.DEFAULT) {
+                    LOG.info("Motor DOM do XSD usando " + candidate + ": " + lastError);
+                }
+                return candidate;
+            } catch (ParserConfigurationException | FactoryConfigurationError | RuntimeException e) {
+                lastError = e;
             }
-
-        } catch (Exception e) {
-            throw new RuntimeException("Erro crítico ao fazer parse do XSD. " +
-                    "Verifique se o arquivo XSD está bem formado: " + e.getMessage(), e);
         }
+        throw new RuntimeException("Erro crítico ao fazer parse do XSD: nenhuma implementação de DOM disponível", lastError);
+    }
+
+    private Map<String, ContentHandler> createContentHandlers() {
+        Map<String, ContentHandler> handlers = new HashMap<>();
+        handlers.put("sequence", (child, buffer, pending, structure) ->
+                parseSequence(child, buffer.sequenceElements, pending, structure));
+        handlers.put("choice", (child, buffer, pending, structure) ->
+                parseSequence(child, buffer.choiceElements, pending, structure));
+        handlers.put("attribute", (child, buffer, pending, structure) ->
+                buffer.directAttributes.add(parseAttribute(child, structure)));
+        handlers.put("complexContent", (child, buffer, pending, structure) -> parseDerivations(child,
+                buffer.complexExtensionAttributes, buffer.complexRestrictionAttributes, structure));
+        handlers.put("simpleContent", (child, buffer, pending, structure) -> parseDerivations(child,
+                buffer.simpleExtensionAttributes, buffer.simpleRestrictionAttributes, structure));
+        return handlers;
     }
 
     private XsdStructure buildStructure(Element root) {
@@ -97,62 +340,58 @@ public class XsdParser {
         String targetNamespace = root.getAttribute("targetNamespace");
         structure.setTargetNamespace(targetNamespace);
 
-        // Processar apenas elementos que são filhos diretos do root
-        processDirectChildElements(root, structure);
-
-        // Processar apenas tipos complexos que são filhos diretos do root
-        processDirectChildComplexTypes(root, structure);
+        // Processar elementos e tipos complexos que são filhos diretos do root em uma única passada
+        forEachXsdChild(root, child -> {
+            if ("element".equals(child.getLocalName())) {
+                XsdElement xsdElement = parseElement(child, structure);
+                xsdElement.setRoot(true);
+                structure.addElement(xsdElement);
+            } else if ("complexType".equals(child.getLocalName())) {
+                structure.addComplexType(parseComplexType(child, structure));
+            } else if ("include".equals(child.getLocalName()) || "import".equals(child.getLocalName()) ||
+                    "redefine".equals(child.getLocalName())) {
+                structure.addSchemaReference(parseSchemaReference(child));
+            }
+        });
 
+        structure.discardNameTable();
         return structure;
     }
 
-    private void processDirectChildElements(Element root, XsdStructure structure) {
-        NodeList children = root.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element element = (Element) child;
-                if (XSD_NAMESPACE.equals(element.getNamespaceURI()) && 
-                    "element".equals(element.getLocalName()) &&
-                    !processedElements.contains(element)) {
-                    
-                    processedElements.add(element);
-                    XsdElement xsdElement = parseElement(element);
-                    xsdElement.setRoot(true);
-                    structure.addElement(xsdElement);
-                }
-            }
-        }
+    private XsdSchemaReference parseSchemaReference(Element reference) {
+        XsdSchemaReference.Kind kind = XsdSchemaReference.Kind.valueOf(reference.getLocalName().toUpperCase());
+        String schemaLocation = reference.getAttribute("schemaLocation");
+        String namespace = reference.getAttribute("namespace");
+        return new XsdSchemaReference(kind,
+                schemaLocation.isEmpty() ? null : schemaLocation,
+                namespace.isEmpty() ? null : namespace);
     }
 
-    private void processDirectChildComplexTypes(Element root, XsdStructure structure) {
-        NodeList children = root.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element element = (Element) child;
-                if (XSD_NAMESPACE.equals(element.getNamespaceURI()) && 
-                    "complexType".equals(element.getLocalName()) &&
-                    !processedElements.contains(element)) {
-                    
-                    processedElements.add(element);
-                    XsdComplexType xsdComplexType = parseComplexType(element);
-                    structure.addComplexType(xsdComplexType);
-                }
-            }
+    private XsdElement parseElement(Element element, XsdStructure structure) {
+        XsdElement xsdElement = parseElementDeclaration(element, structure);
+        Deque<PendingElement> pending = new ArrayDeque<>();
+        pending.push(new PendingElement(element, xsdElement));
+        parsePending(pending, structure);
+        return xsdElement;
+    }
+
+    private void parsePending(Deque<PendingElement> pending, XsdStructure structure) {
+        while (!pending.isEmpty()) {
+            PendingElement next = pending.pop();
+            parseElementContent(next.element, next.xsdElement, pending, structure);
         }
     }
 
-    private XsdElement parseElement(Element element) {
+    private XsdElement parseElementDeclaration(Element element, XsdStructure structure) {
         String name = element.getAttribute("name");
         String type = element.getAttribute("type");
         String minOccurs = element.getAttribute("minOccurs");
         String maxOccurs = element.getAttribute("maxOccurs");
 
-        XsdElement xsdElement = new XsdElement(name);
+        XsdElement xsdElement = new XsdElement(structure.intern(name));
 
         if (!type.isEmpty()) {
-            xsdElement.setType(type);
+            xsdElement.setType(structure.intern(type));
         }
 
         if (!minOccurs.isEmpty()) {
@@ -167,303 +406,105 @@ public class XsdParser {
             xsdElement.setMaxOccurs(maxOccurs);
         }
 
-        // Processar documentação
-        processDocumentation(element, xsdElement);
-
-        // Processar tipo complexo inline - apenas filhos diretos
-        processInlineComplexType(element, xsdElement);
-
         return xsdElement;
     }
 
-    private void processDocumentation(Element element, XsdElement xsdElement) {
+    /**
+     * Lê a documentação e o tipo complexo inline em uma única passada pelos filhos diretos.
+     * Os elementos do tipo inline são empilhados em pending.
+     */
+    private void parseElementContent(Element element, XsdElement xsdElement, Deque<PendingElement> pending,
+                                     XsdStructure structure) {
+        boolean annotationSeen = false;
+        boolean complexTypeSeen = false;
         NodeList children = element.getChildNodes();
         for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element childElement = (Element) child;
-                if (XSD_NAMESPACE.equals(childElement.getNamespaceURI()) && 
-                    "annotation".equals(childElement.getLocalName())) {
-                    
-                    NodeList docChildren = childElement.getChildNodes();
-                    for (int j = 0; j < docChildren.getLength(); j++) {
-                        Node docChild = docChildren.item(j);
-                        if (docChild.getNodeType() == Node.ELEMENT_NODE) {
-                            Element docElement = (Element) docChild;
-                            if (XSD_NAMESPACE.equals(docElement.getNamespaceURI()) && 
-                                "documentation".equals(docElement.getLocalName())) {
-                                String docText = docElement.getTextContent();
-                                if (docText != null) {
-                                    xsdElement.setDocumentation(docText.trim());
-                                }
-                                break;
-                            }
-                        }
-                    }
-                    break;
-                }
+            Element child = asXsdElement(children.item(i));
+            if (child == null) {
+                continue;
             }
-        }
-    }
-
-    private void processInlineComplexType(Element element, XsdElement xsdElement) {
-        NodeList children = element.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element childElement = (Element) child;
-                if (XSD_NAMESPACE.equals(childElement.getNamespaceURI()) && 
-                    "complexType".equals(childElement.getLocalName()) &&
-                    !processedElements.contains(childElement)) {
-                    
-                    processedElements.add(childElement);
-                    parseComplexTypeContent(childElement, xsdElement);
-                    break;
+            if (!annotationSeen && "annotation".equals(child.getLocalName())) {
+                annotationSeen = true;
+                String documentation = findDocumentation(child);
+                if (documentation != null) {
+                    xsdElement.setDocumentation(documentation);
                 }
+            } else if (!complexTypeSeen && "complexType".equals(child.getLocalName())) {
+                complexTypeSeen = true;
+                parseComplexTypeContent(child, xsdElement, pending, structure);
             }
         }
     }
 
-    private XsdComplexType parseComplexType(Element complexTypeElement) {
+    private XsdComplexType parseComplexType(Element complexTypeElement, XsdStructure structure) {
         String name = complexTypeElement.getAttribute("name");
-        XsdComplexType complexType = new XsdComplexType(name);
+        XsdComplexType complexType = new XsdComplexType(structure.intern(name));
 
-        parseComplexTypeContent(complexTypeElement, complexType);
+        Deque<PendingElement> pending = new ArrayDeque<>();
+        parseComplexTypeContent(complexTypeElement, complexType, pending, structure);
+        parsePending(pending, structure);
 
         return complexType;
     }
 
-    private void parseComplexTypeContent(Element complexTypeElement, XsdComplexType complexType) {
-        processSequences(complexTypeElement, complexType);
-        processChoices(complexTypeElement, complexType);
-        processAttributes(complexTypeElement, complexType);
-    }
-
-    private void parseComplexTypeContent(Element complexTypeElement, XsdElement parentElement) {
-        processSequences(complexTypeElement, parentElement);
-        processChoices(complexTypeElement, parentElement);
-        processAttributes(complexTypeElement, parentElement);
-    }
-
-    private void processSequences(Element parent, XsdComplexType complexType) {
-        NodeList children = parent.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element childElement = (Element) child;
-                if (XSD_NAMESPACE.equals(childElement.getNamespaceURI()) && 
-                    "sequence".equals(childElement.getLocalName())) {
-                    parseSequence(childElement, complexType);
-                }
-            }
-        }
-    }
-
-    private void processSequences(Element parent, XsdElement parentElement) {
-        NodeList children = parent.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element childElement = (Element) child;
-                if (XSD_NAMESPACE.equals(childElement.getNamespaceURI()) && 
-                    "sequence".equals(childElement.getLocalName())) {
-                    parseSequence(childElement, parentElement);
-                }
-            }
-        }
-    }
-
-    private void processChoices(Element parent, XsdComplexType complexType) {
-        NodeList children = parent.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element childElement = (Element) child;
-                if (XSD_NAMESPACE.equals(childElement.getNamespaceURI()) && 
-                    "choice".equals(childElement.getLocalName())) {
-                    parseChoice(childElement, complexType);
-                }
-            }
-        }
-    }
-
-    private void processChoices(Element parent, XsdElement parentElement) {
-        NodeList children = parent.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element childElement = (Element) child;
-                if (XSD_NAMESPACE.equals(childElement.getNamespaceURI()) && 
-                    "choice".equals(childElement.getLocalName())) {
-                    parseChoice(childElement, parentElement);
-                }
-            }
-        }
-    }
-
-    private void processAttributes(Element parent, XsdComplexType complexType) {
-        processDirectAttributes(parent, complexType);
-        processAttributesInExtensions(parent, complexType);
-    }
-
-    private void processAttributes(Element parent, XsdElement parentElement) {
-        processDirectAttributes(parent, parentElement);
-        processAttributesInExtensions(parent, parentElement);
-    }
-
-    private void processDirectAttributes(Element parent, XsdComplexType complexType) {
-        NodeList children = parent.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element childElement = (Element) child;
-                if (XSD_NAMESPACE.equals(childElement.getNamespaceURI()) && 
-                    "attribute".equals(childElement.getLocalName())) {
-                    XsdAttribute xsdAttr = parseAttribute(childElement);
-                    complexType.addAttribute(xsdAttr);
-                }
+    /**
+     * Classifica cada filho do complexType uma única vez pela tabela de tratadores
+     * e entrega o conteúdo acumulado ao destino (tipo nomeado ou elemento com tipo inline).
+     */
+    private void parseComplexTypeContent(Element complexTypeElement, XsdContentHolder holder,
+                                         Deque<PendingElement> pending, XsdStructure structure) {
+        XsdContentBuffer buffer = new XsdContentBuffer();
+        forEachXsdChild(complexTypeElement, child -> {
+            ContentHandler handler = contentHandlers.get(child.getLocalName());
+            if (handler != null) {
+                handler.handle(child, buffer, pending, structure);
             }
-        }
-    }
-
-    private void processDirectAttributes(Element parent, XsdElement parentElement) {
-        NodeList children = parent.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element childElement = (Element) child;
-                if (XSD_NAMESPACE.equals(childElement.getNamespaceURI()) && 
-                    "attribute".equals(childElement.getLocalName())) {
-                    XsdAttribute xsdAttr = parseAttribute(childElement);
-                    parentElement.addAttribute(xsdAttr);
-                }
-            }
-        }
+        });
+        buffer.flushInto(holder);
     }
 
-    private void processAttributesInExtensions(Element parent, XsdComplexType complexType) {
-        // Processar atributos em complexContent/extension, simpleContent/extension, etc.
-        processAttributesInPath(parent, complexType, "complexContent", "extension");
-        processAttributesInPath(parent, complexType, "simpleContent", "extension");
-        processAttributesInPath(parent, complexType, "complexContent", "restriction");
-        processAttributesInPath(parent, complexType, "simpleContent", "restriction");
-    }
-
-    private void processAttributesInExtensions(Element parent, XsdElement parentElement) {
-        // Processar atributos em complexContent/extension, simpleContent/extension, etc.
-        processAttributesInPath(parent, parentElement, "complexContent", "extension");
-        processAttributesInPath(parent, parentElement, "simpleContent", "extension");
-        processAttributesInPath(parent, parentElement, "complexContent", "restriction");
-        processAttributesInPath(parent, parentElement, "simpleContent", "restriction");
-    }
-
-    private void processAttributesInPath(Element parent, XsdComplexType complexType, String contentType, String derivationType) {
-        NodeList contentNodes = parent.getChildNodes();
-        for (int i = 0; i < contentNodes.getLength(); i++) {
-            Node contentNode = contentNodes.item(i);
-            if (contentNode.getNodeType() == Node.ELEMENT_NODE) {
-                Element contentElement = (Element) contentNode;
-                if (XSD_NAMESPACE.equals(contentElement.getNamespaceURI()) && 
-                    contentType.equals(contentElement.getLocalName())) {
-                    
-                    NodeList derivationNodes = contentElement.getChildNodes();
-                    for (int j = 0; j < derivationNodes.getLength(); j++) {
-                        Node derivationNode = derivationNodes.item(j);
-                        if (derivationNode.getNodeType() == Node.ELEMENT_NODE) {
-                            Element derivationElement = (Element) derivationNode;
-                            if (XSD_NAMESPACE.equals(derivationElement.getNamespaceURI()) && 
-                                derivationType.equals(derivationElement.getLocalName())) {
-                                
-                                processDirectAttributes(derivationElement, complexType);
-                            }
-                        }
-                    }
-                }
+    private void parseSequence(Element sequence, List<XsdElement> target, Deque<PendingElement> pending,
+                               XsdStructure structure) {
+        forEachXsdChild(sequence, child -> {
+            if ("element".equals(child.getLocalName())) {
+                XsdElement xsdElement = parseElementDeclaration(child, structure);
+                target.add(xsdElement);
+                pending.push(new PendingElement(child, xsdElement));
             }
-        }
+        });
     }
 
-    private void processAttributesInPath(Element parent, XsdElement parentElement, String contentType, String derivationType) {
-        NodeList contentNodes = parent.getChildNodes();
-        for (int i = 0; i < contentNodes.getLength(); i++) {
-            Node contentNode = contentNodes.item(i);
-            if (contentNode.getNodeType() == Node.ELEMENT_NODE) {
-                Element contentElement = (Element) contentNode;
-                if (XSD_NAMESPACE.equals(contentElement.getNamespaceURI()) && 
-                    contentType.equals(contentElement.getLocalName())) {
-                    
-                    NodeList derivationNodes = contentElement.getChildNodes();
-                    for (int j = 0; j < derivationNodes.getLength(); j++) {
-                        Node derivationNode = derivationNodes.item(j);
-                        if (derivationNode.getNodeType() == Node.ELEMENT_NODE) {
-                            Element derivationElement = (Element) derivationNode;
-                            if (XSD_NAMESPACE.equals(derivationElement.getNamespaceURI()) && 
-                                derivationType.equals(derivationElement.getLocalName())) {
-                                
-                                processDirectAttributes(derivationElement, parentElement);
-                            }
-                        }
-                    }
-                }
+    private void parseDerivations(Element content, List<XsdAttribute> extensionTarget,
+                                  List<XsdAttribute> restrictionTarget, XsdStructure structure) {
+        // Atributos em complexContent/extension, simpleContent/restriction, etc.
+        forEachXsdChild(content, derivation -> {
+            if ("extension".equals(derivation.getLocalName())) {
+                parseDirectAttributes(derivation, extensionTarget, structure);
+            } else if ("restriction".equals(derivation.getLocalName())) {
+                parseDirectAttributes(derivation, restrictionTarget, structure);
             }
-        }
+        });
     }
 
-    private void parseSequence(Element sequence, XsdComplexType complexType) {
-        NodeList children = sequence.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element childElement = (Element) child;
-                if (XSD_NAMESPACE.equals(childElement.getNamespaceURI()) &&
-                    "element".equals(childElement.getLocalName()) &&
-                    !processedElements.contains(childElement)) {
-                    
-                    processedElements.add(childElement);
-                    XsdElement element = parseElement(childElement);
-                    complexType.addElement(element);
-                }
+    private void parseDirectAttributes(Element parent, List<XsdAttribute> target, XsdStructure structure) {
+        forEachXsdChild(parent, child -> {
+            if ("attribute".equals(child.getLocalName())) {
+                target.add(parseAttribute(child, structure));
             }
-        }
+        });
     }
 
-    private void parseSequence(Element sequence, XsdElement parentElement) {
-        NodeList children = sequence.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element childElement = (Element) child;
-                if (XSD_NAMESPACE.equals(childElement.getNamespaceURI()) &&
-                    "element".equals(childElement.getLocalName()) &&
-                    !processedElements.contains(childElement)) {
-                    
-                    processedElements.add(childElement);
-                    XsdElement element = parseElement(childElement);
-                    parentElement.addChild(element);
-                }
-            }
-        }
-    }
-
-    private void parseChoice(Element choice, XsdComplexType complexType) {
-        parseSequence(choice, complexType);
-    }
-
-    private void parseChoice(Element choice, XsdElement parentElement) {
-        parseSequence(choice, parentElement);
-    }
-
-    private XsdAttribute parseAttribute(Element attrElement) {
+    private XsdAttribute parseAttribute(Element attrElement, XsdStructure structure) {
         String name = attrElement.getAttribute("name");
         String type = attrElement.getAttribute("type");
         String use = attrElement.getAttribute("use");
         String defaultValue = attrElement.getAttribute("default");
         String fixedValue = attrElement.getAttribute("fixed");
 
-        XsdAttribute attribute = new XsdAttribute(name);
+        XsdAttribute attribute = new XsdAttribute(structure.intern(name));
 
         if (!type.isEmpty()) {
-            attribute.setType(type);
+            attribute.setType(structure.intern(type));
         }
 
         if (!use.isEmpty()) {
@@ -480,39 +521,51 @@ public class XsdParser {
             attribute.setFixedValue(fixedValue);
         }
 
-        // Processar documentação do atributo
-        processAttributeDocumentation(attrElement, attribute);
+        // Processar documentação do atributo (apenas a primeira annotation)
+        NodeList children = attrElement.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Element child = asXsdElement(children.item(i));
+            if (child != null && "annotation".equals(child.getLocalName())) {
+                String documentation = findDocumentation(child);
+                if (documentation != null) {
+                    attribute.setDocumentation(documentation);
+                }
+                break;
+            }
+        }
 
         return attribute;
     }
 
-    private void processAttributeDocumentation(Element attrElement, XsdAttribute attribute) {
-        NodeList children = attrElement.getChildNodes();
+    /**
+     * Retorna o texto do primeiro xs:documentation da annotation, ou null se não houver.
+     */
+    private String findDocumentation(Element annotation) {
+        NodeList docChildren = annotation.getChildNodes();
+        for (int j = 0; j < docChildren.getLength(); j++) {
+            Element docElement = asXsdElement(docChildren.item(j));
+            if (docElement != null && "documentation".equals(docElement.getLocalName())) {
+                String docText = docElement.getTextContent();
+                return docText != null ? docText.trim() : null;
+            }
+        }
+        return null;
+    }
+
+    private void forEachXsdChild(Element parent, Consumer<Element> action) {
+        NodeList children = parent.getChildNodes();
         for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element childElement = (Element) child;
-                if (XSD_NAMESPACE.equals(childElement.getNamespaceURI()) && 
-                    "annotation".equals(childElement.getLocalName())) {
-                    
-                    NodeList docChildren = childElement.getChildNodes();
-                    for (int j = 0; j < docChildren.getLength(); j++) {
-                        Node docChild = docChildren.item(j);
-                        if (docChild.getNodeType() == Node.ELEMENT_NODE) {
-                            Element docElement = (Element) docChild;
-                            if (XSD_NAMESPACE.equals(docElement.getNamespaceURI()) && 
-                                "documentation".equals(docElement.getLocalName())) {
-                                String docText = docElement.getTextContent();
-                                if (docText != null) {
-                                    attribute.setDocumentation(docText.trim());
-                                }
-                                break;
-                            }
-                        }
-                    }
-                    break;
-                }
+            Element child = asXsdElement(children.item(i));
+            if (child != null) {
+                action.accept(child);
             }
         }
     }
+
+    private Element asXsdElement(Node node) {
+        if (node.getNodeType() == Node.ELEMENT_NODE && XSD_NAMESPACE.equals(node.getNamespaceURI())) {
+            return (Element) node;
+        }
+        return null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,368 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.*;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.xml.XmlAttribute;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Monta o XsdStructure a partir da árvore PSI que a IDE já construiu para o arquivo aberto
+ * no editor, sem um segundo parse dos bytes. Produz o mesmo resultado dos motores StAX e DOM.
+ * Deve ser chamado dentro de uma read action; verifica o cancelamento a cada elemento,
+ * o que permite rodar numa read action não bloqueante.
+ * A documentação fica como posição no texto da PSI, e os limites de nós e de profundidade de
+ * XsdParseLimits valem como no parse: ao atingir um deles a montagem para e a estrutura é marcada como truncada.
+ */
+public final class XsdPsiBuilder {
+    private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
+
+    /**
+     * Propriedade de sistema para desligar o uso da PSI (ligado por padrão).
+     * Ex.: -Dxsdview.parser.psi=false para sempre fazer o parse do arquivo.
+     */
+    public static final String PSI_PROPERTY = "xsdview.parser.psi";
+
+    // Estrutura em montagem; também fornece a tabela de nomes compartilhada pelos nós
+    private final XsdStructure structure;
+    private final XsdParseLimits limits;
+    // Texto que a PSI representa, de onde a documentação é lida sob demanda
+    private final XsdTextSource documentationSource;
+    private int nodesBuilt;
+    // Limite atingido; a partir daí nenhum nó é criado e o que já foi lido é entregue aos pais
+    private String limitReached;
+
+    private XsdPsiBuilder(XsdStructure structure, XsdParseLimits limits, XsdTextSource documentationSource) {
+        this.structure = structure;
+        this.limits = limits;
+        this.documentationSource = documentationSource;
+    }
+
+    /**
+     * Elemento já criado cujo conteúdo ainda será lido; ver buildElement.
+     */
+    private static final class PendingTag {
+        final XmlTag tag;
+        final XsdElement xsdElement;
+        // Nível do elemento no aninhamento, a partir de 1 no elemento de topo
+        final int depth;
+
+        PendingTag(XmlTag tag, XsdElement xsdElement, int depth) {
+            this.tag = tag;
+            this.xsdElement = xsdElement;
+            this.depth = depth;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty(PSI_PROPERTY, "true").trim());
+    }
+
+    /**
+     * @param file Arquivo XSD já processado pela IDE
+     * @return Estrutura do XSD, ou null se o arquivo não tiver elemento raiz
+     */
+    public static XsdStructure build(XmlFile file) {
+        return build(file, XsdParseLimits.fromSystemProperties());
+    }
+
+    /**
+     * @param file Arquivo XSD já processado pela IDE
+     * @param limits Limites de nós e de profundidade da estrutura
+     * @return Estrutura do XSD, ou null se o arquivo não tiver elemento raiz
+     */
+    public static XsdStructure build(XmlFile file, XsdParseLimits limits) {
+        XmlTag root = file.getRootTag();
+        if (root == null) {
+            return null;
+        }
+
+        XsdStructure structure = new XsdStructure();
+        structure.setTargetNamespace(attribute(root, "targetNamespace"));
+        // O texto da versão já processada pela PSI é imutável; as posições das tags valem nele
+        XsdPsiBuilder builder = new XsdPsiBuilder(structure, limits,
+                XsdCachingTextSource.of(file.getViewProvider().getContents()));
+        builder.buildSchema(root);
+        if (builder.limitReached != null) {
+            structure.markTruncated(String.format("Estrutura truncada em %d nós (%s)",
+                    builder.nodesBuilt, builder.limitReached));
+        }
+        structure.discardNameTable();
+        return structure;
+    }
+
+    private void buildSchema(XmlTag root) {
+        // Processar apenas elementos e tipos complexos que são filhos diretos do root
+        for (XmlTag child : root.getSubTags()) {
+            if (limitReached != null) {
+                break;
+            }
+            if (isXsd(child, "element")) {
+                XsdElement xsdElement = buildElementDeclaration(child);
+                if (xsdElement == null) {
+                    break;
+                }
+                xsdElement.setRoot(true);
+                structure.addElement(xsdElement);
+                Deque<PendingTag> pending = new ArrayDeque<>();
+                pushPending(pending, child, xsdElement, 1);
+                buildPending(pending);
+            } else if (isXsd(child, "complexType")) {
+                if (!nodeAllowed()) {
+                    break;
+                }
+                XsdComplexType complexType = new XsdComplexType(structure.intern(attribute(child, "name")));
+                structure.addComplexType(complexType);
+                Deque<PendingTag> pending = new ArrayDeque<>();
+                buildComplexTypeContent(child, 0, pending).flushInto(complexType);
+                buildPending(pending);
+            } else if (isXsd(child, "include") || isXsd(child, "import") || isXsd(child, "redefine")) {
+                structure.addSchemaReference(buildSchemaReference(child));
+            }
+        }
+    }
+
+    private static XsdSchemaReference buildSchemaReference(XmlTag tag) {
+        XsdSchemaReference.Kind kind = XsdSchemaReference.Kind.valueOf(tag.getLocalName().toUpperCase());
+        String schemaLocation = attribute(tag, "schemaLocation");
+        String namespace = attribute(tag, "namespace");
+        return new XsdSchemaReference(kind,
+                schemaLocation.isEmpty() ? null : schemaLocation,
+                namespace.isEmpty() ? null : namespace);
+    }
+
+    /**
+     * Os aninhamentos element → complexType → sequence → element são percorridos com uma pilha
+     * explícita, sem recursão, para que schemas muito profundos não estourem a pilha da thread.
+     */
+    private void buildPending(Deque<PendingTag> pending) {
+        while (!pending.isEmpty() && limitReached == null) {
+            PendingTag next = pending.pop();
+            buildElementContent(next, pending);
+        }
+    }
+
+    /**
+     * Agenda a leitura do conteúdo do elemento, se o seu nível estiver dentro do limite de profundidade.
+     */
+    private void pushPending(Deque<PendingTag> pending, XmlTag tag, XsdElement xsdElement, int depth) {
+        if (depth > limits.getMaxDepth()) {
+            limitReached = String.format("limite de profundidade %d", limits.getMaxDepth());
+            return;
+        }
+        pending.push(new PendingTag(tag, xsdElement, depth));
+    }
+
+    /**
+     * Conta um elemento, tipo complexo ou atributo prestes a ser criado.
+     * @return false se o limite de nós foi atingido e o nó não deve ser criado
+     */
+    private boolean nodeAllowed() {
+        if (limitReached == null && nodesBuilt >= limits.getMaxNodes()) {
+            limitReached = String.format("limite de %d nós", limits.getMaxNodes());
+        }
+        if (limitReached != null) {
+            return false;
+        }
+        nodesBuilt++;
+        return true;
+    }
+
+    /**
+     * @return Elemento com os atributos da tag, ou null se um limite foi atingido
+     */
+    private XsdElement buildElementDeclaration(XmlTag tag) {
+        ProgressManager.checkCanceled();
+        if (!nodeAllowed()) {
+            return null;
+        }
+        String name = attribute(tag, "name");
+        String type = attribute(tag, "type");
+        String minOccurs = attribute(tag, "minOccurs");
+        String maxOccurs = attribute(tag, "maxOccurs");
+
+        XsdElement xsdElement = new XsdElement(structure.intern(name));
+
+        if (!type.isEmpty()) {
+            xsdElement.setType(structure.intern(type));
+        }
+
+        if (!minOccurs.isEmpty()) {
+            try {
+                xsdElement.setMinOccurs(Integer.parseInt(minOccurs));
+            } catch (NumberFormatException e) {
+                xsdElement.setMinOccurs(1);
+            }
+        }
+
+        if (!maxOccurs.isEmpty()) {
+            xsdElement.setMaxOccurs(maxOccurs);
+        }
+
+        return xsdElement;
+    }
+
+    private void buildElementContent(PendingTag element, Deque<PendingTag> pending) {
+        // Apenas a primeira annotation e o primeiro complexType inline são considerados
+        boolean annotationSeen = false;
+        boolean complexTypeSeen = false;
+        for (XmlTag child : element.tag.getSubTags()) {
+            if (limitReached != null) {
+                break;
+            }
+            if (!annotationSeen && isXsd(child, "annotation")) {
+                annotationSeen = true;
+                XsdDocumentation documentation = findDocumentation(child);
+                if (documentation != null) {
+                    element.xsdElement.setDocumentationRef(documentation);
+                }
+            } else if (!complexTypeSeen && isXsd(child, "complexType")) {
+                complexTypeSeen = true;
+                buildComplexTypeContent(child, element.depth, pending).flushInto(element.xsdElement);
+            }
+        }
+    }
+
+    /**
+     * @param depth Nível do elemento dono do tipo (0 para um tipo complexo de topo)
+     */
+    private XsdContentBuffer buildComplexTypeContent(XmlTag tag, int depth, Deque<PendingTag> pending) {
+        XsdContentBuffer buffer = new XsdContentBuffer();
+        for (XmlTag child : tag.getSubTags()) {
+            if (limitReached != null) {
+                break;
+            }
+            if (isXsd(child, "sequence")) {
+                buildSequence(child, depth, buffer.sequenceElements, pending);
+            } else if (isXsd(child, "choice")) {
+                buildSequence(child, depth, buffer.choiceElements, pending);
+            } else if (isXsd(child, "attribute")) {
+                addAttribute(buildAttribute(child), buffer.directAttributes);
+            } else if (isXsd(child, "complexContent")) {
+                buildDerivations(child, buffer.complexExtensionAttributes, buffer.complexRestrictionAttributes);
+            } else if (isXsd(child, "simpleContent")) {
+                buildDerivations(child, buffer.simpleExtensionAttributes, buffer.simpleRestrictionAttributes);
+            }
+        }
+        return buffer;
+    }
+
+    private void buildSequence(XmlTag tag, int depth, List<XsdElement> target, Deque<PendingTag> pending) {
+        for (XmlTag child : tag.getSubTags()) {
+            if (isXsd(child, "element")) {
+                XsdElement xsdElement = buildElementDeclaration(child);
+                if (xsdElement == null) {
+                    return;
+                }
+                target.add(xsdElement);
+                pushPending(pending, child, xsdElement, depth + 1);
+            }
+        }
+    }
+
+    private void buildDerivations(XmlTag tag, List<XsdAttribute> extensionTarget,
+                                  List<XsdAttribute> restrictionTarget) {
+        for (XmlTag derivation : tag.getSubTags()) {
+            if (isXsd(derivation, "extension")) {
+                buildDirectAttributes(derivation, extensionTarget);
+            } else if (isXsd(derivation, "restriction")) {
+                buildDirectAttributes(derivation, restrictionTarget);
+            }
+        }
+    }
+
+    private void buildDirectAttributes(XmlTag tag, List<XsdAttribute> target) {
+        for (XmlTag child : tag.getSubTags()) {
+            if (isXsd(child, "attribute")) {
+                addAttribute(buildAttribute(child), target);
+            }
+        }
+    }
+
+    private static void addAttribute(XsdAttribute xsdAttribute, List<XsdAttribute> target) {
+        if (xsdAttribute != null) {
+            target.add(xsdAttribute);
+        }
+    }
+
+    /**
+     * @return Atributo com a sua documentação, ou null se o limite de nós foi atingido
+     */
+    private XsdAttribute buildAttribute(XmlTag tag) {
+        if (!nodeAllowed()) {
+            return null;
+        }
+        String name = attribute(tag, "name");
+        String type = attribute(tag, "type");
+        String use = attribute(tag, "use");
+        String defaultValue = attribute(tag, "default");
+        String fixedValue = attribute(tag, "fixed");
+
+        XsdAttribute xsdAttribute = new XsdAttribute(structure.intern(name));
+
+        if (!type.isEmpty()) {
+            xsdAttribute.setType(structure.intern(type));
+        }
+
+        if (!use.isEmpty()) {
+            xsdAttribute.setUse(use);
+        } else {
+            xsdAttribute.setUse("optional");
+        }
+
+        if (!defaultValue.isEmpty()) {
+            xsdAttribute.setDefaultValue(defaultValue);
+        }
+
+        if (!fixedValue.isEmpty()) {
+            xsdAttribute.setFixedValue(fixedValue);
+        }
+
+        // Processar documentação do atributo (apenas a primeira annotation)
+        for (XmlTag child : tag.getSubTags()) {
+            if (isXsd(child, "annotation")) {
+                XsdDocumentation documentation = findDocumentation(child);
+                if (documentation != null) {
+                    xsdAttribute.setDocumentationRef(documentation);
+                }
+                break;
+            }
+        }
+
+        return xsdAttribute;
+    }
+
+    /**
+     * Posição do conteúdo do primeiro xs:documentation da annotation, sem copiar o texto:
+     * ele é decodificado só quando exibido, como nos motores de parse.
+     * @return Documentação, ou null se não houver
+     */
+    private XsdDocumentation findDocumentation(XmlTag annotation) {
+        for (XmlTag child : annotation.getSubTags()) {
+            if (isXsd(child, "documentation")) {
+                // Vazio em <xs:documentation/>
+                TextRange content = child.getValue().getTextRange();
+                return XsdDocumentation.at(documentationSource, content.getStartOffset(), content.getLength());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Valor do atributo com entidades resolvidas, ou "" se ausente (como no DOM)
+     */
+    private static String attribute(XmlTag tag, String localName) {
+        XmlAttribute attribute = tag.getAttribute(localName);
+        String value = attribute != null ? attribute.getDisplayValue() : null;
+        return value != null ? value : "";
+    }
+
+    private static boolean isXsd(XmlTag tag, String localName) {
+        return XSD_NAMESPACE.equals(tag.getNamespace()) && localName.equals(tag.getLocalName());
+    }
+}
\ No newline at end of file
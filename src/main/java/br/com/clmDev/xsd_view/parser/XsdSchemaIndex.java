@@ -0,0 +1,26 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdSchemaSummary;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.util.Collection;
+
+/**
+ * Consulta ao índice dos arquivos XSD do projeto usada pelo XsdSchemaLoader: o resumo de um
+ * arquivo sem processá-lo e os arquivos que declaram um nome no topo.
+ * As respostas podem estar indisponíveis (ex.: indexação em andamento); o loader então processa os arquivos.
+ */
+public interface XsdSchemaIndex {
+
+    /**
+     * @param file Arquivo XSD
+     * @return Resumo do conteúdo atual do arquivo, ou null se não estiver disponível
+     */
+    XsdSchemaSummary getSummary(VirtualFile file);
+
+    /**
+     * @param name Nome local do elemento ou tipo complexo (sem prefixo)
+     * @return Arquivos que declaram o nome no topo; vazio se não houver ou o índice não estiver disponível
+     */
+    Collection<VirtualFile> findSchemasDefining(String name);
+}
\ No newline at end of file
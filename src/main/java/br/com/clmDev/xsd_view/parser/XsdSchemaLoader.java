@@ -0,0 +1,489 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdComplexType;
+import br.com.clmDev.xsd_view.model.XsdElement;
+import br.com.clmDev.xsd_view.model.XsdSchemaReference;
+import br.com.clmDev.xsd_view.model.XsdSchemaSummary;
+import br.com.clmDev.xsd_view.model.XsdStructure;
+import br.com.clmDev.xsd_view.model.XsdType;
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Carrega um XSD junto com o grafo de xs:include / xs:import / xs:redefine.
+ * Os arquivos referenciados são resolvidos relativamente ao arquivo que os referencia
+ * e processados em paralelo nas threads da plataforma; cada arquivo é processado uma única vez,
+ * mesmo quando alcançado por vários caminhos. Os tipos de todos os arquivos são
+ * mesclados na busca de tipos do XsdStructure principal.
+ * Os arquivos referenciados vêm do {@link XsdModuleCache} quando informado; as referências
+ * obtidas dele são mantidas até o loader ser descartado.
+ * Com um {@link XsdSchemaIndex}, as referências de cada arquivo vêm do resumo indexado, sem esperar
+ * pelo seu parse; arquivos que não declaram tipos complexos não são processados; e os tipos que
+ * não estão no grafo são procurados nos demais XSD do projeto que os declaram, em segundo plano,
+ * quando a visualização os pede pela primeira vez.
+ */
+public class XsdSchemaLoader implements Disposable {
+    private static final Logger LOG = Logger.getInstance(XsdSchemaLoader.class);
+
+    private static final int PARALLELISM = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final XsdParser parser;
+    private final XsdParseCache cache;
+    private final XsdModuleCache moduleCache;
+    private final XsdSchemaIndex index;
+    private final Queue<XsdModuleCache.Handle> handles = new ConcurrentLinkedQueue<>();
+    // Arquivos abertos pela busca no índice, por caminho: vários tipos costumam vir do mesmo arquivo
+    private final Map<String, XsdStructure> indexedModules = new ConcurrentHashMap<>();
+    // Resultado da busca no índice por nome local (vazio: nenhum arquivo declara o tipo) e buscas em andamento
+    private final Map<String, Optional<XsdType>> indexedTypes = new ConcurrentHashMap<>();
+    private final Set<String> pendingTypes = ConcurrentHashMap.newKeySet();
+    // Uma busca por vez, nas threads da plataforma; cancelada junto com o loader
+    private final ExecutorService typeLookups = AppExecutorUtil.createBoundedApplicationPoolExecutor("XSD View type lookup", 1);
+    private final ProgressIndicator typeLookupIndicator = new EmptyProgressIndicator();
+    private volatile Runnable typesFoundListener;
+    private volatile boolean typesFoundUnnotified;
+    private volatile boolean disposed;
+
+    /**
+     * @param engine Motor de parse usado para cada arquivo
+     * @param cache Cache em disco consultado para cada arquivo (opcional)
+     */
+    public XsdSchemaLoader(XsdParser.Engine engine, XsdParseCache cache) {
+        this(engine, cache, null);
+    }
+
+    /**
+     * @param engine Motor de parse usado para cada arquivo
+     * @param cache Cache em disco consultado para cada arquivo (opcional)
+     * @param moduleCache Cache em memória compartilhado dos arquivos referenciados (opcional)
+     */
+    public XsdSchemaLoader(XsdParser.Engine engine, XsdParseCache cache, XsdModuleCache moduleCache) {
+        this(new XsdParser(engine), cache, moduleCache);
+    }
+
+    /**
+     * @param parser Parser usado para cada arquivo, compartilhado pelas threads da carga
+     * @param cache Cache em disco consultado para cada arquivo (opcional)
+     * @param moduleCache Cache em memória compartilhado dos arquivos referenciados (opcional)
+     */
+    public XsdSchemaLoader(XsdParser parser, XsdParseCache cache, XsdModuleCache moduleCache) {
+        this(parser, cache, moduleCache, null);
+    }
+
+    /**
+     * @param parser Parser usado para cada arquivo, compartilhado pelas threads da carga
+     * @param cache Cache em disco consultado para cada arquivo (opcional)
+     * @param moduleCache Cache em memória compartilhado dos arquivos referenciados (opcional)
+     * @param index Índice dos XSD do projeto (opcional)
+     */
+    public XsdSchemaLoader(XsdParser parser, XsdParseCache cache, XsdModuleCache moduleCache, XsdSchemaIndex index) {
+        this.parser = parser;
+        this.cache = cache;
+        this.moduleCache = moduleCache;
+        this.index = index;
+    }
+
+    /**
+     * Processa o arquivo principal e todos os arquivos que ele referencia, direta ou indiretamente.
+     * Falhas em arquivos referenciados não impedem a exibição do principal.
+     * @param file Arquivo XSD principal
+     * @param indicator Indicador de progresso do arquivo principal (opcional)
+     * @return Estrutura do arquivo principal com os tipos de todo o grafo
+     */
+    public XsdStructure load(VirtualFile file, ProgressIndicator indicator) {
+        return load(file, null, indicator);
+    }
+
+    /**
+     * Igual a {@link #load(VirtualFile, ProgressIndicator)}, mas com o arquivo principal vindo do texto
+     * informado (ex.: editor com alterações não salvas) em vez do disco. Esse texto não passa pelo cache em disco.
+     * @param file Arquivo XSD principal, usado para resolver as referências
+     * @param text Texto imutável do arquivo principal, ou null para ler do disco
+     * @param indicator Indicador de progresso do arquivo principal (opcional)
+     * @return Estrutura do arquivo principal com os tipos de todo o grafo
+     */
+    public XsdStructure load(VirtualFile file, CharSequence text, ProgressIndicator indicator) {
+        XsdStructure main = text != null ? parseText(file, text, indicator) : parse(file, indicator);
+        return loadReferences(file, main, indicator);
+    }
+
+    /**
+     * Carrega os arquivos referenciados por uma estrutura principal já montada (ex.: a partir da PSI).
+     * @param file Arquivo XSD principal, usado para resolver as referências
+     * @param main Estrutura do arquivo principal; recebe os tipos de todo o grafo
+     * @param indicator Indicador de progresso (opcional)
+     * @return A própria estrutura principal
+     */
+    public XsdStructure loadReferences(VirtualFile file, XsdStructure main, ProgressIndicator indicator) {
+        Load load = new Load(indicator);
+        Graph graph = load.graph;
+        graph.files.put(file.getPath(), file);
+        graph.modules.put(file.getPath(), main);
+        graph.references.put(file.getPath(), main.getSchemaReferences());
+
+        scheduleReferences(file, main.getSchemaReferences(), load);
+        load.await();
+
+        mergeReferencedTypes(file, main, graph);
+        if (index != null) {
+            main.setTypeFallback(this::findIndexedType);
+        }
+        return main;
+    }
+
+    /**
+     * Define quem é avisado quando a busca no índice encontra um tipo que antes foi respondido como
+     * ausente; o aviso vem da thread da busca. Tipos encontrados antes da chamada geram um aviso imediato.
+     * @param listener Ação a executar, ou null para nenhuma
+     */
+    public void setTypesFoundListener(Runnable listener) {
+        typesFoundListener = listener;
+        if (listener != null && typesFoundUnnotified) {
+            typesFoundUnnotified = false;
+            listener.run();
+        }
+    }
+
+    /**
+     * Tarefas de uma carga, num executor limitado da plataforma criado para ela e encerrado no fim.
+     * Cada tarefa agenda as dos arquivos que referencia em vez de esperar por elas: nenhuma thread do
+     * executor fica bloqueada e ciclos de include não causam deadlock. Só quem pediu a carga espera.
+     */
+    private final class Load {
+        final Graph graph = new Graph();
+        final ProgressIndicator indicator;
+        private final ExecutorService executor =
+                AppExecutorUtil.createBoundedApplicationPoolExecutor("XSD View schema loader", PARALLELISM);
+        private final Object lock = new Object();
+        private int running;
+        private Throwable failure;
+        // Carga encerrada (concluída, cancelada ou com falha): tarefas ainda na fila não fazem nada
+        private volatile boolean finished;
+
+        Load(ProgressIndicator indicator) {
+            this.indicator = indicator;
+        }
+
+        void submit(VirtualFile file) {
+            synchronized (lock) {
+                running++;
+            }
+            try {
+                executor.execute(() -> run(file));
+            } catch (RejectedExecutionException e) {
+                taskDone(e);
+            }
+        }
+
+        private void run(VirtualFile file) {
+            Throwable error = null;
+            try {
+                if (!finished) {
+                    loadModule(file, this);
+                }
+            } catch (Throwable e) {
+                error = e;
+            }
+            taskDone(error);
+        }
+
+        private void taskDone(Throwable error) {
+            synchronized (lock) {
+                if (error != null && failure == null) {
+                    failure = error;
+                }
+                running--;
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * Espera as tarefas verificando o cancelamento. A falha de uma tarefa (inclusive o cancelamento
+         * visto por ela) é relançada como foi lançada, sem embrulho.
+         */
+        void await() {
+            Throwable error;
+            try {
+                synchronized (lock) {
+                    while (running > 0 && failure == null && (indicator == null || !indicator.isCanceled())) {
+                        lock.wait(50);
+                    }
+                    error = failure;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException(e);
+            } finally {
+                finished = true;
+                executor.shutdown();
+            }
+            if (indicator != null) {
+                indicator.checkCanceled();
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            if (error != null) {
+                throw new IllegalStateException(error);
+            }
+        }
+    }
+
+    /**
+     * Arquivos e estruturas de uma carga, preenchidos em paralelo pelas tarefas.
+     */
+    private static final class Graph {
+        final Map<String, VirtualFile> files = new ConcurrentHashMap<>();
+        // Estrutura de cada arquivo processado; os abertos só pelo resumo não têm
+        final Map<String, XsdStructure> modules = new ConcurrentHashMap<>();
+        // Referências de cada arquivo, do resumo indexado ou da estrutura
+        final Map<String, List<XsdSchemaReference>> references = new ConcurrentHashMap<>();
+    }
+
+    private XsdStructure parse(VirtualFile file, ProgressIndicator indicator) {
+        XsdStructure structure = cache != null ? cache.parse(file, parser, indicator) : parser.parseXsd(file, indicator);
+        return canonicalizeIfEnabled(file, structure);
+    }
+
+    private XsdStructure parseText(VirtualFile file, CharSequence text, ProgressIndicator indicator) {
+        return canonicalizeIfEnabled(file, parser.parseXsd(text, indicator));
+    }
+
+    private static XsdStructure canonicalizeIfEnabled(VirtualFile file, XsdStructure structure) {
+        if (XsdCanonicalizer.isEnabled()) {
+            LOG.info("Canonicalização de " + file.getName() + ": " + XsdCanonicalizer.canonicalize(structure));
+        }
+        return structure;
+    }
+
+    /**
+     * Arquivo referenciado: compartilhado entre visualizações quando há cache de módulos.
+     * O arquivo principal nunca passa por aqui, pois a sua estrutura é alterada pela visualização.
+     * O parse recebe um indicador próprio que só repassa o cancelamento da carga: vários módulos
+     * são processados ao mesmo tempo e não devem disputar o texto e a fração do indicador principal.
+     */
+    private XsdStructure parseModule(VirtualFile file, ProgressIndicator indicator) {
+        ProgressIndicator moduleIndicator = indicator != null ? new SensitiveProgressWrapper(indicator) : null;
+        if (moduleCache == null) {
+            return parse(file, moduleIndicator);
+        }
+        XsdModuleCache.Handle handle = moduleCache.acquire(file, () -> parse(file, moduleIndicator));
+        handles.add(handle);
+        return handle.getStructure();
+    }
+
+    /**
+     * Busca alternativa da estrutura principal. Não bloqueia quem pede (em geral a EDT, ao expandir um nó):
+     * devolve o que uma busca anterior encontrou ou, na primeira vez que o nome é pedido, agenda a busca
+     * e devolve null; ao encontrar o tipo, a busca avisa o listener para que a estrutura seja consultada de novo.
+     */
+    private XsdType findIndexedType(String typeName) {
+        if (disposed) {
+            return null;
+        }
+        int colon = typeName.indexOf(':');
+        String localName = colon >= 0 ? typeName.substring(colon + 1) : typeName;
+        Optional<XsdType> found = indexedTypes.get(localName);
+        if (found != null) {
+            return found.orElse(null);
+        }
+        if (pendingTypes.add(localName)) {
+            try {
+                typeLookups.execute(() -> lookUpIndexedType(localName));
+            } catch (RejectedExecutionException e) {
+                // Loader descartado durante o pedido
+                pendingTypes.remove(localName);
+            }
+        }
+        return null;
+    }
+
+    private void lookUpIndexedType(String localName) {
+        try {
+            XsdType type = searchIndex(localName);
+            indexedTypes.put(localName, Optional.ofNullable(type));
+            if (type != null && !disposed) {
+                Runnable listener = typesFoundListener;
+                if (listener != null) {
+                    listener.run();
+                } else {
+                    typesFoundUnnotified = true;
+                }
+            }
+        } catch (ProcessCanceledException e) {
+            // Loader ou projeto descartado: nada a memorizar
+        } finally {
+            pendingTypes.remove(localName);
+            if (disposed) {
+                // Módulo obtido depois que o dispose já liberou os demais
+                releaseHandles();
+            }
+        }
+    }
+
+    /**
+     * Procura no índice os arquivos que declaram o nome e devolve o tipo complexo do primeiro que o tiver,
+     * processado como módulo.
+     */
+    private XsdType searchIndex(String localName) {
+        for (VirtualFile file : index.findSchemasDefining(localName)) {
+            XsdSchemaSummary summary = index.getSummary(file);
+            if (summary != null && !summary.getComplexTypeNames().contains(localName)) {
+                // O nome é de um elemento de topo
+                continue;
+            }
+            try {
+                XsdStructure module = indexedModules.get(file.getPath());
+                if (module == null) {
+                    module = parseModule(file, typeLookupIndicator);
+                    indexedModules.putIfAbsent(file.getPath(), module);
+                }
+                XsdType type = module.getType(localName);
+                if (type instanceof XsdComplexType) {
+                    return type;
+                }
+            } catch (ProcessCanceledException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                LOG.warn("Não foi possível processar o schema " + file.getPath() + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Libera os módulos compartilhados obtidos pelos carregamentos deste loader.
+     */
+    @Override
+    public void dispose() {
+        disposed = true;
+        typeLookupIndicator.cancel();
+        typeLookups.shutdownNow();
+        indexedModules.clear();
+        releaseHandles();
+    }
+
+    private void releaseHandles() {
+        XsdModuleCache.Handle handle;
+        while ((handle = handles.poll()) != null) {
+            handle.release();
+        }
+    }
+
+    /**
+     * Agenda uma tarefa para cada arquivo referenciado ainda não visto.
+     */
+    private void scheduleReferences(VirtualFile file, List<XsdSchemaReference> references, Load load) {
+        for (XsdSchemaReference reference : references) {
+            VirtualFile referenced = resolve(file, reference);
+            if (referenced != null && load.graph.files.putIfAbsent(referenced.getPath(), referenced) == null) {
+                load.submit(referenced);
+            }
+        }
+    }
+
+    /**
+     * Mescla os tipos na ordem das referências (busca em largura a partir do principal),
+     * para que conflitos de nome sejam resolvidos sempre da mesma forma.
+     */
+    private void mergeReferencedTypes(VirtualFile file, XsdStructure main, Graph graph) {
+        Set<String> visited = new HashSet<>();
+        Deque<VirtualFile> queue = new ArrayDeque<>();
+        visited.add(file.getPath());
+        queue.add(file);
+        while (!queue.isEmpty()) {
+            VirtualFile current = queue.poll();
+            XsdStructure structure = graph.modules.get(current.getPath());
+            if (structure != null && structure != main) {
+                main.mergeTypesFrom(structure);
+            }
+            List<XsdSchemaReference> references = graph.references.get(current.getPath());
+            if (references == null) {
+                continue;
+            }
+            for (XsdSchemaReference reference : references) {
+                VirtualFile referenced = resolve(current, reference);
+                if (referenced != null && visited.add(referenced.getPath())) {
+                    queue.add(graph.files.getOrDefault(referenced.getPath(), referenced));
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolve o schemaLocation relativamente ao diretório do arquivo que o referencia.
+     * @return Arquivo referenciado ou null se não for local ou não existir
+     */
+    static VirtualFile resolve(VirtualFile file, XsdSchemaReference reference) {
+        String location = reference.getSchemaLocation();
+        if (location == null || location.contains("://")) {
+            return null;
+        }
+        VirtualFile parent = file.getParent();
+        if (parent == null) {
+            return null;
+        }
+        VirtualFile resolved = parent.findFileByRelativePath(location.replace('\\', '/'));
+        return resolved != null && !resolved.isDirectory() ? resolved : null;
+    }
+
+    /**
+     * Processa um arquivo referenciado e agenda os que ele referencia.
+     */
+    private void loadModule(VirtualFile file, Load load) {
+        if (load.indicator != null) {
+            load.indicator.checkCanceled();
+        }
+        Graph graph = load.graph;
+        XsdSchemaSummary summary = index != null ? index.getSummary(file) : null;
+        if (summary == null) {
+            XsdStructure structure = parseReferenced(file, graph, load.indicator);
+            if (structure != null) {
+                graph.references.put(file.getPath(), structure.getSchemaReferences());
+                scheduleReferences(file, structure.getSchemaReferences(), load);
+            }
+            return;
+        }
+
+        // Referências do índice: os arquivos seguintes são processados junto com este
+        graph.references.put(file.getPath(), summary.getReferences());
+        scheduleReferences(file, summary.getReferences(), load);
+        if (!summary.getComplexTypeNames().isEmpty()) {
+            parseReferenced(file, graph, load.indicator);
+        }
+        // Sem tipos complexos não há o que mesclar: o arquivo fica só com o resumo
+    }
+
+    /**
+     * @return Estrutura do arquivo, ou null se ele não pôde ser processado
+     */
+    private XsdStructure parseReferenced(VirtualFile file, Graph graph, ProgressIndicator indicator) {
+        XsdStructure structure;
+        try {
+            // O progresso detalhado fica com o arquivo principal; aqui só há verificação de cancelamento
+            structure = parseModule(file, indicator);
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            LOG.warn("Não foi possível processar o schema referenciado " + file.getPath() + ": " + e.getMessage());
+            return null;
+        }
+        graph.modules.put(file.getPath(), structure);
+        return structure;
+    }
+}
\ No newline at end of file
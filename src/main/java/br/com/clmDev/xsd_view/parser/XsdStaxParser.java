@@ -0,0 +1,977 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.*;
+import com.intellij.openapi.progress.ProgressIndicator;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Motor de parse baseado em StAX (XMLStreamReader).
+ * Constrói o XsdStructure em uma única passada, sem montar a árvore DOM,
+ * produzindo o mesmo resultado do motor DOM do XsdParser.
+ * Cada instância guarda o estado de um único parse; as XMLInputFactory configuradas
+ * vêm de um pool compartilhado entre as threads.
+ * Os limites de XsdParseLimits são verificados durante a passada; ao atingir um deles
+ * o parse para e devolve a estrutura lida até ali, marcada como truncada.
+ */
+class XsdStaxParser {
+    private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
+    private static final int PROGRESS_INTERVAL = 64;
+    private static final char BOM = '\uFEFF';
+
+    private static final XsdObjectPool<XMLInputFactory> FACTORIES = new XsdObjectPool<>(
+            XsdStaxParser::createFactory, factory -> { }, Runtime.getRuntime().availableProcessors());
+
+    private final ProgressIndicator indicator;
+    private final XsdParseLimits limits;
+    private CountingInputStream countingStream;
+    private CountingReader textReader;
+    private long totalBytes;
+    private int elementsBuilt;
+    private int nodesBuilt;
+    private int elementDepth;
+    private long deadline;
+    private XsdStructure structure;
+    // Com origem, a documentação vira apenas a posição do texto (ver XsdDocumentation)
+    private XsdTextSource documentationSource;
+
+    XsdStaxParser() {
+        this(null, XsdParseLimits.fromSystemProperties());
+    }
+
+    /**
+     * @param indicator Indicador para reportar bytes lidos e elementos criados e verificar cancelamento (opcional)
+     * @param limits Limites de recursos do parse
+     */
+    XsdStaxParser(ProgressIndicator indicator, XsdParseLimits limits) {
+        this.indicator = indicator;
+        this.limits = limits;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    XsdStructure parse(InputStream inputStream) throws XMLStreamException {
+        return parse(inputStream, -1);
+    }
+
+    /**
+     * @param totalBytes Tamanho do arquivo para calcular a fração do progresso, ou -1 se desconhecido
+     */
+    XsdStructure parse(InputStream inputStream, long totalBytes) throws XMLStreamException {
+        this.countingStream = new CountingInputStream(inputStream, this);
+        this.textReader = null;
+        this.totalBytes = totalBytes;
+        start(null);
+        if (indicator != null) {
+            indicator.setIndeterminate(totalBytes <= 0);
+        }
+        return read(factory -> factory.createXMLStreamReader(countingStream));
+    }
+
+    /**
+     * Faz o parse dos bytes decodificados com a codificação já detectada, para que as posições
+     * da documentação sejam offsets em bytes no arquivo e a origem leia só o trecho de cada uma.
+     * Em codificações cuja largura por caractere não é conhecida, a documentação é carregada durante o parse.
+     * @param charset Codificação do arquivo
+     * @param totalBytes Tamanho do arquivo para calcular a fração do progresso, ou -1 se desconhecido
+     * @param documentationSource Origem dos mesmos bytes para ler a documentação sob demanda
+     */
+    XsdStructure parse(InputStream inputStream, Charset charset, long totalBytes,
+                       XsdTextSource documentationSource) throws XMLStreamException {
+        CharWidth width = CharWidth.of(charset);
+        this.countingStream = new CountingInputStream(inputStream, this);
+        this.totalBytes = totalBytes;
+        start(width != null ? documentationSource : null);
+        if (indicator != null) {
+            indicator.setIndeterminate(totalBytes <= 0);
+        }
+        return read(factory -> {
+            // Os limites contam os bytes do stream; o reader só acompanha as posições.
+            // UTF-8 malformado é recusado: um caractere de substituição desalinharia os offsets em bytes
+            InputStreamReader decoder = width == CharWidth.UTF_8
+                    ? new InputStreamReader(countingStream, charset.newDecoder())
+                    : new InputStreamReader(countingStream, charset);
+            try {
+                PushbackReader decoded = new PushbackReader(decoder, 1);
+                long bomBytes = skipBom(decoded) && width != null ? width.bytes(BOM) : 0;
+                textReader = new CountingReader(decoded, this, false, width, bomBytes);
+            } catch (IOException e) {
+                throw new XMLStreamException(e);
+            }
+            return factory.createXMLStreamReader(textReader);
+        });
+    }
+
+    /**
+     * Faz o parse a partir de texto já decodificado (ex.: conteúdo do editor).
+     */
+    XsdStructure parse(Reader textReader) throws XMLStreamException {
+        return parse(textReader, null);
+    }
+
+    /**
+     * Faz o parse a partir de texto já decodificado.
+     * @param documentationSource Origem do mesmo texto para ler a documentação sob demanda,
+     *                            ou null para carregá-la durante o parse
+     */
+    XsdStructure parse(Reader textReader, XsdTextSource documentationSource) throws XMLStreamException {
+        this.countingStream = null;
+        this.textReader = new CountingReader(textReader, this, true);
+        this.totalBytes = -1;
+        start(documentationSource);
+        if (indicator != null) {
+            indicator.setIndeterminate(true);
+        }
+        return read(factory -> factory.createXMLStreamReader(this.textReader));
+    }
+
+    private XsdStructure read(StreamOpener opener) throws XMLStreamException {
+        XsdStructure result;
+        try {
+            XMLInputFactory factory = FACTORIES.acquire();
+            XMLStreamReader reader;
+            try {
+                reader = opener.open(factory);
+            } finally {
+                // O reader guarda sua própria cópia da configuração; a factory já pode atender outro parse
+                FACTORIES.release(factory);
+            }
+            try {
+                result = readSchema(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (LimitExceededException e) {
+            result = truncated(e);
+        }
+        result.discardNameTable();
+        return result;
+    }
+
+    private interface StreamOpener {
+        /**
+         * Chamado dentro do tratamento dos limites: a leitura inicial da entrada também conta.
+         */
+        XMLStreamReader open(XMLInputFactory factory) throws XMLStreamException;
+    }
+
+    /**
+     * Descarta o BOM do início do texto, que o parser XML não aceita como conteúdo.
+     * @return true se havia BOM
+     */
+    private static boolean skipBom(PushbackReader reader) throws IOException {
+        int first = reader.read();
+        if (first >= 0 && first != BOM) {
+            reader.unread(first);
+        }
+        return first == BOM;
+    }
+
+    private void start(XsdTextSource documentationSource) {
+        this.elementsBuilt = 0;
+        this.nodesBuilt = 0;
+        this.elementDepth = 0;
+        this.structure = null;
+        this.documentationSource = documentationSource;
+        long now = System.currentTimeMillis();
+        this.deadline = limits.getMaxMillis() > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + limits.getMaxMillis();
+    }
+
+    /**
+     * @return Estrutura lida até o limite, com os nós abertos já ligados aos seus pais
+     */
+    private XsdStructure truncated(LimitExceededException e) {
+        XsdStructure partial = structure != null ? structure : new XsdStructure();
+        partial.markTruncated(String.format("Estrutura truncada em %d nós (%s)", nodesBuilt, e.getMessage()));
+        return partial;
+    }
+
+    private XsdStructure readSchema(XMLStreamReader reader) throws XMLStreamException {
+        // Avançar até o elemento raiz
+        while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+            // Ignorar prólogo, comentários e instruções de processamento
+        }
+        if (!reader.isStartElement()) {
+            throw new XMLStreamException("Documento XSD sem elemento raiz");
+        }
+
+        structure = new XsdStructure();
+        structure.setTargetNamespace(attribute(reader, "targetNamespace"));
+
+        // Processar apenas elementos e tipos complexos que são filhos diretos do root.
+        // Cada um entra na estrutura antes do seu conteúdo, para constar do resultado parcial se um limite for atingido
+        while (nextChild(reader)) {
+            if (isXsd(reader, "element")) {
+                XsdElement xsdElement = readElementDeclaration(reader);
+                xsdElement.setRoot(true);
+                structure.addElement(xsdElement);
+                readTree(reader, new ElementFrame(xsdElement));
+            } else if (isXsd(reader, "complexType")) {
+                nodeBuilt();
+                XsdComplexType complexType = new XsdComplexType(structure.intern(attribute(reader, "name")));
+                structure.addComplexType(complexType);
+                readTree(reader, new ComplexTypeFrame(complexType));
+            } else if (isXsd(reader, "include") || isXsd(reader, "import") || isXsd(reader, "redefine")) {
+                structure.addSchemaReference(readSchemaReference(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+
+        return structure;
+    }
+
+    private XsdSchemaReference readSchemaReference(XMLStreamReader reader) throws XMLStreamException {
+        XsdSchemaReference.Kind kind = XsdSchemaReference.Kind.valueOf(reader.getLocalName().toUpperCase());
+        String schemaLocation = attribute(reader, "schemaLocation");
+        String namespace = attribute(reader, "namespace");
+        skipElement(reader);
+        return new XsdSchemaReference(kind,
+                schemaLocation.isEmpty() ? null : schemaLocation,
+                namespace.isEmpty() ? null : namespace);
+    }
+
+    /**
+     * Percorre o aninhamento element → complexType → sequence/choice → element com uma pilha
+     * explícita em vez de recursão: schemas gerados com milhares de níveis não estouram a pilha da thread.
+     * @param first Quadro do nó em que o reader está posicionado
+     */
+    private void readTree(XMLStreamReader reader, Frame first) throws XMLStreamException {
+        Deque<Frame> stack = new ArrayDeque<>();
+        push(stack, first);
+        try {
+            while (!stack.isEmpty()) {
+                if (!nextChild(reader)) {
+                    pop(stack).end();
+                    continue;
+                }
+                Frame child = stack.peek().child(reader);
+                if (child != null) {
+                    push(stack, child);
+                }
+            }
+        } catch (LimitExceededException e) {
+            // Fechar os nós abertos para que o conteúdo já lido chegue aos pais
+            while (!stack.isEmpty()) {
+                pop(stack).end();
+            }
+            throw e;
+        }
+    }
+
+    private void push(Deque<Frame> stack, Frame frame) {
+        if (frame instanceof ElementFrame) {
+            if (elementDepth >= limits.getMaxDepth()) {
+                throw new LimitExceededException(String.format("limite de profundidade %d", limits.getMaxDepth()));
+            }
+            elementDepth++;
+        }
+        stack.push(frame);
+    }
+
+    private Frame pop(Deque<Frame> stack) {
+        Frame frame = stack.pop();
+        if (frame instanceof ElementFrame) {
+            elementDepth--;
+        }
+        return frame;
+    }
+
+    /**
+     * Nó aberto durante a passada: recebe os filhos diretos e é fechado no fim da sua tag.
+     */
+    private abstract static class Frame {
+        /**
+         * Trata o filho em que o reader está posicionado.
+         * @return Quadro do filho se o seu conteúdo precisar ser percorrido, ou null se já foi consumido
+         */
+        abstract Frame child(XMLStreamReader reader) throws XMLStreamException;
+
+        void end() {
+        }
+    }
+
+    /**
+     * xs:element: apenas a primeira annotation e o primeiro complexType inline são considerados.
+     */
+    private final class ElementFrame extends Frame {
+        private final XsdElement element;
+        private boolean annotationSeen;
+        private boolean complexTypeSeen;
+
+        ElementFrame(XsdElement element) {
+            this.element = element;
+        }
+
+        @Override
+        Frame child(XMLStreamReader reader) throws XMLStreamException {
+            if (!annotationSeen && isXsd(reader, "annotation")) {
+                annotationSeen = true;
+                XsdDocumentation documentation = readAnnotationDocumentation(reader);
+                if (documentation != null) {
+                    element.setDocumentationRef(documentation);
+                }
+                return null;
+            }
+            if (!complexTypeSeen && isXsd(reader, "complexType")) {
+                complexTypeSeen = true;
+                return new ComplexTypeFrame(element);
+            }
+            skipElement(reader);
+            return null;
+        }
+    }
+
+    /**
+     * xs:complexType: acumula o conteúdo e o entrega ao dono (tipo nomeado ou elemento) no fim da tag.
+     */
+    private final class ComplexTypeFrame extends Frame {
+        private final XsdContentHolder holder;
+        private final XsdContentBuffer buffer = new XsdContentBuffer();
+
+        ComplexTypeFrame(XsdContentHolder holder) {
+            this.holder = holder;
+        }
+
+        @Override
+        Frame child(XMLStreamReader reader) throws XMLStreamException {
+            if (isXsd(reader, "sequence")) {
+                return new SequenceFrame(buffer.sequenceElements);
+            } else if (isXsd(reader, "choice")) {
+                return new SequenceFrame(buffer.choiceElements);
+            } else if (isXsd(reader, "attribute")) {
+                buffer.directAttributes.add(readAttribute(reader));
+            } else if (isXsd(reader, "complexContent")) {
+                readDerivations(reader, buffer.complexExtensionAttributes, buffer.complexRestrictionAttributes);
+            } else if (isXsd(reader, "simpleContent")) {
+                readDerivations(reader, buffer.simpleExtensionAttributes, buffer.simpleRestrictionAttributes);
+            } else {
+                skipElement(reader);
+            }
+            return null;
+        }
+
+        @Override
+        void end() {
+            buffer.flushInto(holder);
+        }
+    }
+
+    /**
+     * xs:sequence ou xs:choice: cada xs:element vira um filho, completado quando o seu quadro fecha.
+     */
+    private final class SequenceFrame extends Frame {
+        private final List<XsdElement> target;
+
+        SequenceFrame(List<XsdElement> target) {
+            this.target = target;
+        }
+
+        @Override
+        Frame child(XMLStreamReader reader) throws XMLStreamException {
+            if (isXsd(reader, "element")) {
+                XsdElement xsdElement = readElementDeclaration(reader);
+                target.add(xsdElement);
+                return new ElementFrame(xsdElement);
+            }
+            skipElement(reader);
+            return null;
+        }
+    }
+
+    /**
+     * Lê os atributos de um xs:element; os filhos são lidos pelo ElementFrame.
+     */
+    private XsdElement readElementDeclaration(XMLStreamReader reader) throws XMLStreamException {
+        String name = attribute(reader, "name");
+        String type = attribute(reader, "type");
+        String minOccurs = attribute(reader, "minOccurs");
+        String maxOccurs = attribute(reader, "maxOccurs");
+
+        nodeBuilt();
+        XsdElement xsdElement = new XsdElement(structure.intern(name));
+        elementBuilt();
+
+        if (!type.isEmpty()) {
+            xsdElement.setType(structure.intern(type));
+        }
+
+        if (!minOccurs.isEmpty()) {
+            try {
+                xsdElement.setMinOccurs(Integer.parseInt(minOccurs));
+            } catch (NumberFormatException e) {
+                xsdElement.setMinOccurs(1);
+            }
+        }
+
+        if (!maxOccurs.isEmpty()) {
+            xsdElement.setMaxOccurs(maxOccurs);
+        }
+
+        return xsdElement;
+    }
+
+    private void readDerivations(XMLStreamReader reader, List<XsdAttribute> extensionTarget,
+                                 List<XsdAttribute> restrictionTarget) throws XMLStreamException {
+        while (nextChild(reader)) {
+            if (isXsd(reader, "extension")) {
+                readDirectAttributes(reader, extensionTarget);
+            } else if (isXsd(reader, "restriction")) {
+                readDirectAttributes(reader, restrictionTarget);
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    private void readDirectAttributes(XMLStreamReader reader, List<XsdAttribute> target) throws XMLStreamException {
+        while (nextChild(reader)) {
+            if (isXsd(reader, "attribute")) {
+                target.add(readAttribute(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    private XsdAttribute readAttribute(XMLStreamReader reader) throws XMLStreamException {
+        String name = attribute(reader, "name");
+        String type = attribute(reader, "type");
+        String use = attribute(reader, "use");
+        String defaultValue = attribute(reader, "default");
+        String fixedValue = attribute(reader, "fixed");
+
+        nodeBuilt();
+        XsdAttribute xsdAttribute = new XsdAttribute(structure.intern(name));
+
+        if (!type.isEmpty()) {
+            xsdAttribute.setType(structure.intern(type));
+        }
+
+        if (!use.isEmpty()) {
+            xsdAttribute.setUse(use);
+        } else {
+            xsdAttribute.setUse("optional");
+        }
+
+        if (!defaultValue.isEmpty()) {
+            xsdAttribute.setDefaultValue(defaultValue);
+        }
+
+        if (!fixedValue.isEmpty()) {
+            xsdAttribute.setFixedValue(fixedValue);
+        }
+
+        // Processar documentação do atributo
+        boolean annotationSeen = false;
+        while (nextChild(reader)) {
+            if (!annotationSeen && isXsd(reader, "annotation")) {
+                annotationSeen = true;
+                XsdDocumentation documentation = readAnnotationDocumentation(reader);
+                if (documentation != null) {
+                    xsdAttribute.setDocumentationRef(documentation);
+                }
+            } else {
+                skipElement(reader);
+            }
+        }
+
+        return xsdAttribute;
+    }
+
+    /**
+     * Lê o primeiro xs:documentation da annotation atual: o texto, ou apenas a sua posição
+     * quando há uma origem para lê-lo depois. A posição vem da linha/coluna dos eventos convertida
+     * pelo CountingReader, porque o offset de caracteres do StAX se desalinha entre os blocos lidos.
+     * @return Documentação, ou null se não houver
+     */
+    private XsdDocumentation readAnnotationDocumentation(XMLStreamReader reader) throws XMLStreamException {
+        XsdDocumentation documentation = null;
+        while (nextChild(reader)) {
+            if (documentation == null && isXsd(reader, "documentation")) {
+                long start = documentationSource != null ? offsetOf(reader.getLocation()) : -1;
+                // Convertido antes de avançar: a janela do reader só guarda os caracteres recentes
+                long offset = start >= 0 ? textReader.sourceOffset(start) : -1;
+                if (offset < 0 || offset > Integer.MAX_VALUE) {
+                    documentation = XsdDocumentation.of(readTextContent(reader).trim());
+                } else {
+                    // Início: logo após o '>' da tag de abertura; fim: no '<' da tag de fechamento
+                    skipElement(reader);
+                    long end = textReader.tagStartBefore(start, offsetOf(reader.getLocation()));
+                    long endOffset = end >= 0 ? textReader.sourceOffset(end) : -1;
+                    if (endOffset >= 0 && endOffset - offset <= Integer.MAX_VALUE) {
+                        documentation = XsdDocumentation.at(documentationSource, (int) offset, (int) (endOffset - offset));
+                    }
+                }
+            } else {
+                skipElement(reader);
+            }
+        }
+        return documentation;
+    }
+
+    /**
+     * @return Offset da posição do evento no texto entregue ao StAX, ou -1 se não puder ser calculado
+     */
+    private long offsetOf(Location location) {
+        return textReader != null ? textReader.offsetOf(location.getLineNumber(), location.getColumnNumber()) : -1;
+    }
+
+    /**
+     * Equivalente ao getTextContent() do DOM: concatena todo o texto dos descendentes.
+     */
+    private String readTextContent(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Conta um elemento, tipo complexo ou atributo prestes a ser criado, verificando o limite de nós e o tempo.
+     */
+    private void nodeBuilt() {
+        if (nodesBuilt >= limits.getMaxNodes()) {
+            throw new LimitExceededException(String.format("limite de %d nós", limits.getMaxNodes()));
+        }
+        if (nodesBuilt % PROGRESS_INTERVAL == 0) {
+            checkTime();
+        }
+        nodesBuilt++;
+    }
+
+    /**
+     * Chamado pelo stream a cada leitura: o texto entre nós (documentação longa, conteúdo ignorado) também conta.
+     */
+    private void inputRead(long count) {
+        if (count > limits.getMaxBytes()) {
+            throw new LimitExceededException(String.format("limite de %d bytes", limits.getMaxBytes()));
+        }
+        checkTime();
+    }
+
+    private void checkTime() {
+        if (System.currentTimeMillis() > deadline) {
+            throw new LimitExceededException(String.format("limite de tempo de %d ms", limits.getMaxMillis()));
+        }
+    }
+
+    private void elementBuilt() {
+        elementsBuilt++;
+        if (indicator == null || elementsBuilt % PROGRESS_INTERVAL != 0) {
+            return;
+        }
+        indicator.checkCanceled();
+        if (countingStream == null) {
+            indicator.setText2(String.format("%d elementos", elementsBuilt));
+            return;
+        }
+        long bytesRead = countingStream.getCount();
+        if (totalBytes > 0) {
+            indicator.setFraction(Math.min(1.0, (double) bytesRead / totalBytes));
+        }
+        indicator.setText2(String.format("%d KB lidos | %d elementos", bytesRead / 1024, elementsBuilt));
+    }
+
+    /**
+     * Avança até o próximo filho do elemento atual.
+     * @return true se posicionado no início de um filho, false ao atingir o fim do elemento atual
+     */
+    private boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private boolean isXsd(XMLStreamReader reader, String localName) {
+        return XSD_NAMESPACE.equals(reader.getNamespaceURI()) && localName.equals(reader.getLocalName());
+    }
+
+    /**
+     * Equivalente ao Element.getAttribute() do DOM: retorna "" quando o atributo não existe.
+     */
+    private String attribute(XMLStreamReader reader, String localName) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String namespace = reader.getAttributeNamespace(i);
+            if ((namespace == null || namespace.isEmpty()) && localName.equals(reader.getAttributeLocalName(i))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Limite de recursos atingido. Não é checked para atravessar o XMLStreamReader sem ser embrulhada
+     * (é lançada de dentro do stream de entrada) e é tratada em parse, que devolve a estrutura parcial.
+     */
+    private static class LimitExceededException extends RuntimeException {
+        LimitExceededException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * Conta os caracteres entregues ao XMLStreamReader e guarda o início das linhas e os caracteres
+     * mais recentes, para converter a linha e a coluna de um evento em offset no texto.
+     * Um \r isolado é entregue como \n: o XML normaliza as quebras de linha para \n de qualquer forma,
+     * e o StAX informa a coluna com um caractere a menos nas linhas que começam após um \r isolado.
+     * A troca é de um caractere por um, então os offsets continuam valendo para o texto original.
+     * Com a largura dos caracteres, soma também os bytes até uma âncora que só avança, para converter
+     * posições no texto em offsets no arquivo.
+     */
+    private static class CountingReader extends FilterReader {
+        private static final int NO_PENDING = -2;
+        private static final int MIN_WINDOW = 16 * 1024;
+        private static final int MAX_BLOCK = 1 << 24;
+
+        private final XsdStaxParser parser;
+        private final boolean countsInput;
+        private final char[] single = new char[1];
+        private long count;
+        // Caractere lido à frente para saber se o \r do fim do bloco é seguido de \n (-1: fim do texto)
+        private int pending = NO_PENDING;
+        // Últimos caracteres entregues, em anel; maior que os blocos pedidos, que limitam o quanto o
+        // XMLStreamReader está à frente do evento atual
+        private char[] window = new char[MIN_WINDOW];
+        // Início das linhas a partir de firstLine (base 1); as que terminam antes da janela são descartadas
+        private long[] lineStarts = new long[256];
+        private int firstLine = 1;
+        private int lineCount = 1;
+        // Bytes do arquivo antes do caractere anchor (null: as posições são do próprio texto)
+        private final CharWidth width;
+        private long anchor;
+        private long anchorBytes;
+
+        /**
+         * @param countsInput true para que os caracteres contem nos limites (texto sem stream de bytes por baixo)
+         */
+        CountingReader(Reader in, XsdStaxParser parser, boolean countsInput) {
+            this(in, parser, countsInput, null, 0);
+        }
+
+        /**
+         * @param width Largura dos caracteres no arquivo, ou null para offsets no próprio texto
+         * @param skippedBytes Bytes do arquivo antes do primeiro caractere (BOM)
+         */
+        CountingReader(Reader in, XsdStaxParser parser, boolean countsInput, CharWidth width, long skippedBytes) {
+            super(in);
+            this.parser = parser;
+            this.countsInput = countsInput;
+            this.width = width;
+            this.anchorBytes = skippedBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int n = read(single, 0, 1);
+            return n < 0 ? -1 : single[0];
+        }
+
+        @Override
+        public int read(char[] buffer, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n;
+            if (pending == NO_PENDING) {
+                n = in.read(buffer, off, len);
+                if (n <= 0) {
+                    return n;
+                }
+            } else if (pending < 0) {
+                return -1;
+            } else {
+                buffer[off] = (char) pending;
+                pending = NO_PENDING;
+                int more = len > 1 ? in.read(buffer, off + 1, len - 1) : 0;
+                n = 1 + Math.max(more, 0);
+            }
+            int end = off + n;
+            if (buffer[end - 1] == '\r') {
+                pending = in.read();
+            }
+            for (int i = off; i < end; i++) {
+                char c = buffer[i];
+                if (c == '\r' && (i + 1 < end ? buffer[i + 1] : pending) != '\n') {
+                    c = '\n';
+                    buffer[i] = c;
+                }
+                if (c == '\n') {
+                    lineStarted(count + (i - off) + 1);
+                }
+            }
+            remember(buffer, off, n, len);
+            count += n;
+            if (countsInput) {
+                parser.inputRead(count);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void mark(int readAheadLimit) throws IOException {
+            throw new IOException("mark não suportado");
+        }
+
+        @Override
+        public void reset() throws IOException {
+            throw new IOException("reset não suportado");
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            char[] skipped = new char[(int) Math.min(Math.max(n, 0), 8192)];
+            int read = read(skipped, 0, skipped.length);
+            return Math.max(read, 0);
+        }
+
+        /**
+         * @param line Linha informada pelo StAX (base 1)
+         * @param column Coluna informada pelo StAX (base 1)
+         * @return Offset da posição, ou -1 se a linha já saiu da janela
+         */
+        long offsetOf(int line, int column) {
+            int index = line - firstLine;
+            if (index < 0 || index >= lineCount || column < 1) {
+                return -1;
+            }
+            return lineStarts[index] + column - 1;
+        }
+
+        /**
+         * @param from Início do conteúdo de uma tag
+         * @param to Posição logo após o '>' da tag de fechamento
+         * @return Offset do '<' da tag de fechamento, from se a tag não tem conteúdo (&lt;x/&gt;),
+         * ou -1 se o trecho já saiu da janela
+         */
+        long tagStartBefore(long from, long to) {
+            if (to < from || to > count) {
+                return -1;
+            }
+            if (to == from) {
+                return from;
+            }
+            long oldest = count - window.length;
+            int mask = window.length - 1;
+            for (long position = to - 1; position >= from && position >= oldest; position--) {
+                if (window[(int) (position & mask)] == '<') {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Chamado com posições crescentes: a âncora avança até a posição e não volta.
+         * @param position Posição no texto entregue ao XMLStreamReader
+         * @return Offset em bytes no arquivo, a própria posição se a largura não é conhecida,
+         * ou -1 se a posição ficou para trás da âncora
+         */
+        long sourceOffset(long position) {
+            if (width == null) {
+                return position;
+            }
+            if (position < anchor || position > count) {
+                return -1;
+            }
+            advanceAnchor(position, null, 0);
+            return anchorBytes;
+        }
+
+        /**
+         * @param buffer Bloco sendo entregue, com os caracteres a partir de count (null se não há)
+         */
+        private void advanceAnchor(long to, char[] buffer, int off) {
+            int mask = window.length - 1;
+            for (long position = anchor; position < to; position++) {
+                char c = position < count ? window[(int) (position & mask)] : buffer[off + (int) (position - count)];
+                anchorBytes += width.bytes(c);
+            }
+            anchor = to;
+        }
+
+        private void lineStarted(long start) {
+            if (lineCount == lineStarts.length) {
+                long oldest = count - window.length;
+                int ended = 0;
+                while (ended < lineCount - 1 && lineStarts[ended + 1] < oldest) {
+                    ended++;
+                }
+                if (ended >= lineCount / 2) {
+                    System.arraycopy(lineStarts, ended, lineStarts, 0, lineCount - ended);
+                    lineCount -= ended;
+                    firstLine += ended;
+                } else {
+                    lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+                }
+            }
+            lineStarts[lineCount++] = start;
+        }
+
+        /**
+         * Copia o bloco entregue para o anel, que cresce se o XMLStreamReader passar a pedir blocos maiores.
+         */
+        private void remember(char[] buffer, int off, int n, int requested) {
+            if (requested > window.length / 4) {
+                char[] grown = new char[Integer.highestOneBit(Math.min(requested, MAX_BLOCK)) * 8];
+                for (long position = Math.max(0, count - window.length); position < count; position++) {
+                    grown[(int) (position & (grown.length - 1))] = window[(int) (position & (window.length - 1))];
+                }
+                window = grown;
+            }
+            // Os caracteres que saem do anel entram na soma antes de serem sobrescritos
+            long kept = count + n - window.length;
+            if (width != null && anchor < kept) {
+                advanceAnchor(kept, buffer, off);
+            }
+            int skip = Math.max(0, n - window.length);
+            int from = off + skip;
+            long position = count + skip;
+            int remaining = n - skip;
+            while (remaining > 0) {
+                int index = (int) (position & (window.length - 1));
+                int chunk = Math.min(remaining, window.length - index);
+                System.arraycopy(buffer, from, window, index, chunk);
+                from += chunk;
+                position += chunk;
+                remaining -= chunk;
+            }
+        }
+    }
+
+    /**
+     * Bytes que cada caractere decodificado ocupa no arquivo.
+     */
+    private interface CharWidth {
+        CharWidth UTF_8 = c -> c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        CharWidth UTF_16 = c -> 2;
+        CharWidth SINGLE_BYTE = c -> 1;
+
+        int bytes(char c);
+
+        /**
+         * @return Largura da codificação, ou null se ela não é fixa por caractere (ex.: UTF-16 com BOM
+         * consumido pelo decodificador, codificações multibyte asiáticas)
+         */
+        static CharWidth of(Charset charset) {
+            if (charset.equals(StandardCharsets.UTF_8)) {
+                return UTF_8;
+            }
+            if (charset.equals(StandardCharsets.UTF_16BE) || charset.equals(StandardCharsets.UTF_16LE)) {
+                return UTF_16;
+            }
+            if (charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1) {
+                return SINGLE_BYTE;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Conta os bytes entregues ao XMLStreamReader para o indicador de progresso e para os limites.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final XsdStaxParser parser;
+        private long count;
+
+        CountingInputStream(InputStream in, XsdStaxParser parser) {
+            super(in);
+            this.parser = parser;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                parser.inputRead(++count);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+                parser.inputRead(count);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            parser.inputRead(count);
+            return skipped;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,312 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Formato binário compacto do XsdStructure usado pelo cache em disco.
+ * Inteiros são gravados como varint e cada string é gravada uma única vez,
+ * com as repetições (tipos como TDec_1302, xs:string) referenciando a primeira ocorrência.
+ * A documentação carregada sob demanda é gravada como posição em bytes no arquivo de origem,
+ * o que vale porque o cache só guarda estruturas lidas do próprio arquivo.
+ * As árvores de elementos são gravadas e lidas com pilha explícita, sem recursão por nível.
+ */
+final class XsdStructureSerializer {
+    static final int FORMAT_VERSION = 6;
+
+    private static final int NULL_STRING = 0;
+    private static final int NEW_STRING = 1;
+    private static final int STRING_REFERENCE_OFFSET = 2;
+
+    private static final int NO_DOCUMENTATION = 0;
+    private static final int DOCUMENTATION_TEXT = 1;
+    private static final int DOCUMENTATION_LOCATION = 2;
+
+    private XsdStructureSerializer() {
+    }
+
+    static void write(XsdStructure structure, DataOutputStream out) throws IOException {
+        new Writer(out).writeStructure(structure);
+    }
+
+    /**
+     * @param documentationSource Origem do texto para a documentação gravada como posição
+     */
+    static XsdStructure read(DataInputStream in, XsdTextSource documentationSource) throws IOException {
+        return new Reader(in, documentationSource).readStructure();
+    }
+
+    private static final class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> stringIds = new HashMap<>();
+
+        Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeStructure(XsdStructure structure) throws IOException {
+            writeString(structure.getTargetNamespace());
+
+            writeVarInt(structure.getSchemaReferences().size());
+            for (XsdSchemaReference reference : structure.getSchemaReferences()) {
+                writeVarInt(reference.getKind().ordinal());
+                writeString(reference.getSchemaLocation());
+                writeString(reference.getNamespace());
+            }
+
+            writeElements(structure.getRootElements());
+
+            writeVarInt(structure.getComplexTypes().size());
+            for (XsdComplexType complexType : structure.getComplexTypes()) {
+                writeString(complexType.getName());
+                writeString(complexType.getDocumentation());
+                writeString(complexType.getBaseType());
+                out.writeBoolean(complexType.isAbstract());
+                out.writeBoolean(complexType.isMixed());
+                writeElements(complexType.getElements());
+                writeAttributes(complexType.getAttributes());
+            }
+        }
+
+        /**
+         * Grava cada elemento como campos, quantidade e subárvores dos filhos e, por fim, atributos.
+         */
+        private void writeElements(List<XsdElement> elements) throws IOException {
+            writeVarInt(elements.size());
+            // Cada quadro é um elemento aberto e os filhos que faltam gravar
+            Deque<XsdElement> owners = new ArrayDeque<>();
+            Deque<Iterator<XsdElement>> pending = new ArrayDeque<>();
+            pending.push(elements.iterator());
+            while (!pending.isEmpty()) {
+                Iterator<XsdElement> children = pending.peek();
+                if (!children.hasNext()) {
+                    pending.pop();
+                    if (!pending.isEmpty()) {
+                        writeAttributes(owners.pop().getAttributes());
+                    }
+                    continue;
+                }
+                XsdElement element = children.next();
+                writeString(element.getName());
+                writeString(element.getDeclaredType());
+                writeVarInt(element.getMinOccurs());
+                writeString(element.getMaxOccurs());
+                out.writeBoolean(element.isRoot());
+                writeDocumentation(element.getDocumentationRef());
+                writeVarInt(element.getChildren().size());
+                owners.push(element);
+                pending.push(element.getChildren().iterator());
+            }
+        }
+
+        private void writeAttributes(List<XsdAttribute> attributes) throws IOException {
+            writeVarInt(attributes.size());
+            for (XsdAttribute attribute : attributes) {
+                writeString(attribute.getName());
+                writeString(attribute.getDeclaredType());
+                writeString(attribute.getUse());
+                writeString(attribute.getDefaultValue());
+                writeString(attribute.getFixedValue());
+                writeDocumentation(attribute.getDocumentationRef());
+            }
+        }
+
+        private void writeDocumentation(XsdDocumentation documentation) throws IOException {
+            if (documentation == null) {
+                writeVarInt(NO_DOCUMENTATION);
+            } else if (documentation instanceof XsdDocumentation.Location) {
+                XsdDocumentation.Location location = (XsdDocumentation.Location) documentation;
+                writeVarInt(DOCUMENTATION_LOCATION);
+                writeVarInt(location.getOffset());
+                writeVarInt(location.getLength());
+            } else {
+                writeVarInt(DOCUMENTATION_TEXT);
+                writeString(documentation.getText());
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarInt(NULL_STRING);
+                return;
+            }
+            Integer id = stringIds.get(value);
+            if (id != null) {
+                writeVarInt(id + STRING_REFERENCE_OFFSET);
+                return;
+            }
+            stringIds.put(value, stringIds.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(NEW_STRING);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            // minOccurs pode ser negativo em arquivos inválidos; zigzag mantém o varint curto
+            int encoded = (value << 1) ^ (value >> 31);
+            while ((encoded & ~0x7F) != 0) {
+                out.writeByte((encoded & 0x7F) | 0x80);
+                encoded >>>= 7;
+            }
+            out.writeByte(encoded);
+        }
+    }
+
+    private static final class Reader {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private final XsdTextSource documentationSource;
+
+        Reader(DataInputStream in, XsdTextSource documentationSource) {
+            this.in = in;
+            this.documentationSource = documentationSource;
+        }
+
+        XsdStructure readStructure() throws IOException {
+            XsdStructure structure = new XsdStructure();
+            structure.setTargetNamespace(readString());
+
+            int referenceCount = readVarInt();
+            XsdSchemaReference.Kind[] kinds = XsdSchemaReference.Kind.values();
+            for (int i = 0; i < referenceCount; i++) {
+                int kind = readVarInt();
+                if (kind < 0 || kind >= kinds.length) {
+                    throw new IOException("Tipo de referência inválido no cache: " + kind);
+                }
+                structure.addSchemaReference(new XsdSchemaReference(kinds[kind], readString(), readString()));
+            }
+
+            readElements(structure::addElement);
+
+            int complexTypeCount = readVarInt();
+            for (int i = 0; i < complexTypeCount; i++) {
+                XsdComplexType complexType = new XsdComplexType(readString());
+                complexType.setDocumentation(readString());
+                complexType.setBaseType(readString());
+                complexType.setAbstract(in.readBoolean());
+                complexType.setMixed(in.readBoolean());
+                readElements(complexType::addContentElement);
+                readAttributes(complexType);
+                structure.addComplexType(complexType);
+            }
+
+            return structure;
+        }
+
+        /**
+         * Inverso de Writer.writeElements: os atributos de cada elemento vêm depois dos seus filhos.
+         */
+        private void readElements(Consumer<XsdElement> target) throws IOException {
+            Deque<ElementFrame> stack = new ArrayDeque<>();
+            stack.push(new ElementFrame(null, target, readVarInt()));
+            while (!stack.isEmpty()) {
+                ElementFrame frame = stack.peek();
+                if (frame.remaining <= 0) {
+                    stack.pop();
+                    if (frame.owner != null) {
+                        readAttributes(frame.owner);
+                    }
+                    continue;
+                }
+                frame.remaining--;
+                XsdElement element = new XsdElement(readString());
+                element.setType(readString());
+                element.setMinOccurs(readVarInt());
+                element.setMaxOccurs(readString());
+                element.setRoot(in.readBoolean());
+                element.setDocumentationRef(readDocumentation());
+                frame.target.accept(element);
+                stack.push(new ElementFrame(element, element::addContentElement, readVarInt()));
+            }
+        }
+
+        private void readAttributes(XsdContentHolder holder) throws IOException {
+            int count = readVarInt();
+            for (int i = 0; i < count; i++) {
+                XsdAttribute attribute = new XsdAttribute(readString());
+                attribute.setType(readString());
+                attribute.setUse(readString());
+                attribute.setDefaultValue(readString());
+                attribute.setFixedValue(readString());
+                attribute.setDocumentationRef(readDocumentation());
+                holder.addAttribute(attribute);
+            }
+        }
+
+        private XsdDocumentation readDocumentation() throws IOException {
+            int kind = readVarInt();
+            switch (kind) {
+                case NO_DOCUMENTATION:
+                    return null;
+                case DOCUMENTATION_TEXT:
+                    return XsdDocumentation.of(readString());
+                case DOCUMENTATION_LOCATION:
+                    return XsdDocumentation.at(documentationSource, readVarInt(), readVarInt());
+                default:
+                    throw new IOException("Tipo de documentação inválido no cache: " + kind);
+            }
+        }
+
+        private String readString() throws IOException {
+            int code = readVarInt();
+            if (code == NULL_STRING) {
+                return null;
+            }
+            if (code == NEW_STRING) {
+                byte[] bytes = new byte[readVarInt()];
+                in.readFully(bytes);
+                String value = new String(bytes, StandardCharsets.UTF_8);
+                strings.add(value);
+                return value;
+            }
+            int id = code - STRING_REFERENCE_OFFSET;
+            if (id < 0 || id >= strings.size()) {
+                throw new IOException("Referência de string inválida no cache: " + id);
+            }
+            return strings.get(id);
+        }
+
+        private int readVarInt() throws IOException {
+            int encoded = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift > 28) {
+                    throw new IOException("Varint inválido no cache");
+                }
+                b = in.readUnsignedByte();
+                encoded |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (encoded >>> 1) ^ -(encoded & 1);
+        }
+    }
+
+    /**
+     * Elemento em leitura e quantos filhos dele ainda faltam.
+     */
+    private static final class ElementFrame {
+        final XsdElement owner;
+        final Consumer<XsdElement> target;
+        int remaining;
+
+        ElementFrame(XsdElement owner, Consumer<XsdElement> target, int remaining) {
+            this.owner = owner;
+            this.target = target;
+            this.remaining = remaining;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,496 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdSchemaReference;
+import br.com.clmDev.xsd_view.model.XsdSchemaSummary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Varredura léxica leve do texto do XSD que localiza os filhos diretos do xs:schema
+ * e seus intervalos exatos no documento, sem montar nenhum modelo.
+ * Usada pelo parse incremental para saber qual declaração de topo uma edição atingiu
+ * e pelos índices do projeto para obter os nomes de topo e as referências sem processar o arquivo.
+ */
+public final class XsdTopLevelScanner {
+    private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
+
+    enum Kind {
+        ELEMENT,
+        COMPLEX_TYPE,
+        OTHER
+    }
+
+    /**
+     * Trecho do documento ocupado por um filho direto do schema.
+     * Vai do fim do irmão anterior (ou da tag de abertura do schema) até o fim da declaração,
+     * incluindo espaços e comentários que a precedem.
+     */
+    static final class Slot {
+        int start;
+        int end;
+        final Kind kind;
+        // Atributo name de xs:element e xs:complexType, ou null
+        final String name;
+
+        Slot(int start, int end, Kind kind, String name) {
+            this.start = start;
+            this.end = end;
+            this.kind = kind;
+            this.name = name;
+        }
+    }
+
+    /**
+     * Resultado da varredura: a tag de abertura do schema (para reconstruir o contexto de namespaces)
+     * e os trechos de cada filho direto, em ordem.
+     */
+    static final class Result {
+        final String rootStartTag;
+        final String rootEndTag;
+        final List<Slot> slots;
+
+        Result(String rootStartTag, String rootEndTag, List<Slot> slots) {
+            this.rootStartTag = rootStartTag;
+            this.rootEndTag = rootEndTag;
+            this.slots = slots;
+        }
+    }
+
+    private final CharSequence text;
+    private int pos;
+    // Preenchidos só na varredura do resumo
+    private final boolean summarizing;
+    private String targetNamespace;
+    private final List<XsdSchemaReference> references = new ArrayList<>();
+    private int nodeCount;
+
+    private XsdTopLevelScanner(CharSequence text, boolean summarizing) {
+        this.text = text;
+        this.summarizing = summarizing;
+    }
+
+    /**
+     * @return Resultado da varredura ou null se o texto não estiver bem formado o suficiente
+     */
+    static Result scan(CharSequence text) {
+        return new XsdTopLevelScanner(text, false).scanDocument();
+    }
+
+    /**
+     * Resumo do arquivo sem montar o modelo. A contagem de nós é léxica: declarações xs:element e
+     * xs:attribute dentro dos elementos e tipos complexos de topo, mais as próprias declarações de topo.
+     * Atributos são lidos sem resolver entidades.
+     * @param text Texto do XSD
+     * @return Resumo, ou null se o texto não estiver bem formado o suficiente
+     */
+    public static XsdSchemaSummary summarize(CharSequence text) {
+        XsdTopLevelScanner scanner = new XsdTopLevelScanner(text, true);
+        Result result = scanner.scanDocument();
+        if (result == null) {
+            return null;
+        }
+        List<String> elementNames = new ArrayList<>();
+        List<String> complexTypeNames = new ArrayList<>();
+        for (Slot slot : result.slots) {
+            // Sem o atributo name o parser também usa o nome vazio
+            String name = slot.name != null ? slot.name : "";
+            if (slot.kind == Kind.ELEMENT) {
+                elementNames.add(name);
+            } else if (slot.kind == Kind.COMPLEX_TYPE) {
+                complexTypeNames.add(name);
+            }
+        }
+        return new XsdSchemaSummary(scanner.targetNamespace, elementNames, complexTypeNames,
+                scanner.references, scanner.nodeCount);
+    }
+
+    /**
+     * @param text Texto do XSD
+     * @return Nomes dos xs:element e xs:complexType de topo, na ordem do arquivo; vazio se o texto
+     * não estiver bem formado o suficiente
+     */
+    public static List<String> declaredNames(CharSequence text) {
+        Result result = scan(text);
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>();
+        for (Slot slot : result.slots) {
+            if (slot.name != null && !slot.name.isEmpty()) {
+                names.add(slot.name);
+            }
+        }
+        return names;
+    }
+
+    private Result scanDocument() {
+        // Prólogo: declaração XML, comentários, instruções de processamento e DOCTYPE
+        Tag root = null;
+        while (root == null) {
+            int lt = indexOf('<', pos);
+            if (lt < 0) {
+                return null;
+            }
+            pos = lt;
+            if (!skipMarkup()) {
+                if (startsWith("<!")) {
+                    if (!skipDoctype()) {
+                        return null;
+                    }
+                } else {
+                    root = readTag();
+                    if (root == null || root.endTag) {
+                        return null;
+                    }
+                }
+            }
+        }
+
+        String rootStartTag = text.subSequence(root.start, root.end).toString();
+        String rootEndTag = "</" + root.qName + ">";
+        if (summarizing) {
+            targetNamespace = valueOrEmpty(attributeValue(root, "targetNamespace"));
+        }
+        List<Slot> slots = new ArrayList<>();
+        if (root.selfClosing) {
+            return new Result(rootStartTag, rootEndTag, slots);
+        }
+
+        int boundary = root.end;
+        int depth = 0;
+        Kind currentKind = null;
+        String currentName = null;
+        while (true) {
+            int lt = indexOf('<', pos);
+            if (lt < 0) {
+                return null;
+            }
+            pos = lt;
+            if (skipMarkup()) {
+                continue;
+            }
+            Tag tag = readTag();
+            if (tag == null) {
+                return null;
+            }
+            if (tag.endTag) {
+                if (depth == 0) {
+                    // Fim do schema
+                    return new Result(rootStartTag, rootEndTag, slots);
+                }
+                depth--;
+                if (depth == 0) {
+                    slots.add(new Slot(boundary, tag.end, currentKind, currentName));
+                    boundary = tag.end;
+                }
+            } else {
+                if (depth == 0) {
+                    currentKind = kindOf(tag, root);
+                    currentName = currentKind != Kind.OTHER ? attributeValue(tag, "name") : null;
+                    if (summarizing) {
+                        summarizeTopLevel(tag, root, currentKind);
+                    }
+                    if (tag.selfClosing) {
+                        slots.add(new Slot(boundary, tag.end, currentKind, currentName));
+                        boundary = tag.end;
+                        continue;
+                    }
+                } else if (summarizing && currentKind != Kind.OTHER) {
+                    String localName = xsdLocalName(tag, root);
+                    if ("element".equals(localName) || "attribute".equals(localName)) {
+                        nodeCount++;
+                    }
+                }
+                if (!tag.selfClosing) {
+                    depth++;
+                }
+            }
+        }
+    }
+
+    private void summarizeTopLevel(Tag tag, Tag root, Kind kind) {
+        if (kind != Kind.OTHER) {
+            nodeCount++;
+            return;
+        }
+        String localName = xsdLocalName(tag, root);
+        if ("include".equals(localName) || "import".equals(localName) || "redefine".equals(localName)) {
+            String schemaLocation = attributeValue(tag, "schemaLocation");
+            String namespace = attributeValue(tag, "namespace");
+            references.add(new XsdSchemaReference(XsdSchemaReference.Kind.valueOf(localName.toUpperCase()),
+                    schemaLocation == null || schemaLocation.isEmpty() ? null : schemaLocation,
+                    namespace == null || namespace.isEmpty() ? null : namespace));
+        }
+    }
+
+    private static String valueOrEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private Kind kindOf(Tag tag, Tag root) {
+        String localName = xsdLocalName(tag, root);
+        if ("element".equals(localName)) {
+            return Kind.ELEMENT;
+        }
+        if ("complexType".equals(localName)) {
+            return Kind.COMPLEX_TYPE;
+        }
+        return Kind.OTHER;
+    }
+
+    /**
+     * Namespaces declarados entre o schema e a tag não são vistos; schemas reais declaram o do XSD na raiz.
+     * @return Nome local da tag se ela está no namespace do XSD, ou null
+     */
+    private static String xsdLocalName(Tag tag, Tag root) {
+        int colon = tag.qName.indexOf(':');
+        String prefix = colon < 0 ? "" : tag.qName.substring(0, colon);
+        String namespace = tag.namespaces.containsKey(prefix) ? tag.namespaces.get(prefix) : root.namespaces.get(prefix);
+        if (!XSD_NAMESPACE.equals(namespace)) {
+            return null;
+        }
+        return colon < 0 ? tag.qName : tag.qName.substring(colon + 1);
+    }
+
+    /**
+     * Pula comentário, CDATA ou instrução de processamento na posição atual.
+     * @return true se havia algo a pular
+     */
+    private boolean skipMarkup() {
+        if (startsWith("<!--")) {
+            return skipPast("-->");
+        }
+        if (startsWith("<![CDATA[")) {
+            return skipPast("]]>");
+        }
+        if (startsWith("<?")) {
+            return skipPast("?>");
+        }
+        return false;
+    }
+
+    private boolean skipPast(String terminator) {
+        int found = indexOf(terminator, pos);
+        pos = found < 0 ? text.length() : found + terminator.length();
+        return true;
+    }
+
+    private boolean skipDoctype() {
+        int brackets = 0;
+        char quote = 0;
+        for (int i = pos + 2; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '[') {
+                brackets++;
+            } else if (c == ']') {
+                brackets--;
+            } else if (c == '>' && brackets <= 0) {
+                pos = i + 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lê uma tag de abertura ou fechamento iniciada em pos, respeitando aspas nos atributos.
+     */
+    private Tag readTag() {
+        Tag tag = new Tag();
+        tag.start = pos;
+        int i = pos + 1;
+        if (i < text.length() && text.charAt(i) == '/') {
+            tag.endTag = true;
+            i++;
+        }
+        int nameStart = i;
+        while (i < text.length() && !isNameEnd(text.charAt(i))) {
+            i++;
+        }
+        if (i == nameStart) {
+            return null;
+        }
+        tag.qName = text.subSequence(nameStart, i).toString();
+
+        char quote = 0;
+        int attributeStart = i;
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                tag.selfClosing = text.charAt(i - 1) == '/';
+                tag.end = i + 1;
+                tag.attributesStart = attributeStart;
+                tag.attributesEnd = tag.selfClosing ? i - 1 : i;
+                pos = tag.end;
+                if (!tag.endTag) {
+                    readNamespaces(tag, attributeStart, i);
+                }
+                return tag;
+            }
+        }
+        return null;
+    }
+
+    private void readNamespaces(Tag tag, int from, int to) {
+        int i = from;
+        while (i < to) {
+            int xmlns = indexOf("xmlns", i, to);
+            if (xmlns < 0) {
+                return;
+            }
+            int eq = indexOf('=', xmlns);
+            if (eq < 0 || eq >= to || (xmlns > 0 && !Character.isWhitespace(text.charAt(xmlns - 1)))) {
+                i = xmlns + 5;
+                continue;
+            }
+            String name = text.subSequence(xmlns, eq).toString().trim();
+            String prefix;
+            if ("xmlns".equals(name)) {
+                prefix = "";
+            } else if (name.startsWith("xmlns:")) {
+                prefix = name.substring(6);
+            } else {
+                i = xmlns + 5;
+                continue;
+            }
+            int valueStart = eq + 1;
+            while (valueStart < to && Character.isWhitespace(text.charAt(valueStart))) {
+                valueStart++;
+            }
+            if (valueStart >= to) {
+                return;
+            }
+            char quote = text.charAt(valueStart);
+            int valueEnd = indexOf(quote, valueStart + 1);
+            if (valueEnd < 0 || valueEnd > to) {
+                return;
+            }
+            tag.namespaces.put(prefix, text.subSequence(valueStart + 1, valueEnd).toString());
+            i = valueEnd + 1;
+        }
+    }
+
+    /**
+     * @return Valor do atributo sem prefixo da tag, sem resolver entidades, ou null se ausente
+     */
+    private String attributeValue(Tag tag, String attributeName) {
+        int i = tag.attributesStart;
+        int to = tag.attributesEnd;
+        while (i < to) {
+            while (i < to && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int nameStart = i;
+            while (i < to && text.charAt(i) != '=' && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int nameEnd = i;
+            while (i < to && text.charAt(i) != '=') {
+                i++;
+            }
+            i++;
+            while (i < to && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i >= to) {
+                return null;
+            }
+            char quote = text.charAt(i);
+            int valueEnd = quote == '"' || quote == '\'' ? indexOf(quote, i + 1) : -1;
+            if (valueEnd < 0 || valueEnd >= to) {
+                return null;
+            }
+            if (regionEquals(nameStart, nameEnd, attributeName)) {
+                return text.subSequence(i + 1, valueEnd).toString();
+            }
+            i = valueEnd + 1;
+        }
+        return null;
+    }
+
+    private boolean regionEquals(int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (text.charAt(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNameEnd(char c) {
+        return Character.isWhitespace(c) || c == '>' || c == '/';
+    }
+
+    private boolean startsWith(String prefix) {
+        if (pos + prefix.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(pos + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(char c, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(String s, int from) {
+        return indexOf(s, from, text.length());
+    }
+
+    /**
+     * @return Posição de s que termina antes de to, ou -1
+     */
+    private int indexOf(String s, int from, int to) {
+        int last = to - s.length();
+        for (int i = from; i <= last; i++) {
+            int j = 0;
+            while (j < s.length() && text.charAt(i + j) == s.charAt(j)) {
+                j++;
+            }
+            if (j == s.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class Tag {
+        int start;
+        int end;
+        // Trecho dos atributos, entre o nome e o '>' (ou '/>')
+        int attributesStart;
+        int attributesEnd;
+        String qName;
+        boolean endTag;
+        boolean selfClosing;
+        final Map<String, String> namespaces = new HashMap<>();
+    }
+}
\ No newline at end of file
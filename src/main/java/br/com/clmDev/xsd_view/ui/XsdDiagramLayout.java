@@ -0,0 +1,593 @@
+package br.com.clmDev.xsd_view.ui;
+
+import br.com.clmDev.xsd_view.model.XsdComplexType;
+import br.com.clmDev.xsd_view.model.XsdElement;
+import br.com.clmDev.xsd_view.model.XsdElementUse;
+
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Layout imutável do diagrama: posição de cada caixa, textos já truncados e tamanho total.
+ * É calculado uma vez por estrutura ou mudança de expansão; a pintura e os cliques só leem o layout,
+ * sem percorrer de novo a árvore do XSD nem resolver tipos.
+ * Cada nó guarda a posição dos filhos relativa a ele e a altura e profundidade da própria subárvore;
+ * por isso expandir ou colapsar uma caixa só refaz a subárvore dela e os ancestrais (ver replace).
+ * A área ocupada por cada subárvore forma uma hierarquia de retângulos (como uma R-tree) que serve
+ * tanto para pintar só o que cruza a área visível (clip) quanto para localizar a caixa sob o mouse.
+ */
+final class XsdDiagramLayout {
+    static final int ELEMENT_WIDTH = 140;
+    static final int ELEMENT_HEIGHT = 60;
+    static final int HORIZONTAL_SPACING = 180;
+    static final int VERTICAL_SPACING = 80;
+    static final int MARGIN = 50;
+    static final int ATTRIBUTE_SIZE = 15;
+    private static final int ATTRIBUTE_GAP = 5;
+    private static final int ATTRIBUTE_TOP = 10;
+    private static final int EXPAND_BUTTON_OFFSET = 5;
+    private static final int EXPAND_BUTTON_SIZE = 16;
+
+    private static final int MIN_WIDTH = 800;
+    private static final int MIN_HEIGHT = 600;
+
+    /**
+     * Tipo de caixa no diagrama.
+     */
+    enum Kind {
+        ELEMENT,
+        COMPLEX_TYPE
+    }
+
+    /**
+     * Caixa do diagrama e a subárvore exibida à sua direita.
+     */
+    static final class Node {
+        private final Kind kind;
+        private final XsdElementUse use;
+        private final XsdComplexType complexType;
+        private final String nameLabel;
+        private final String typeLabel;
+        private final String occurrence;
+        private final boolean root;
+        private final boolean expandable;
+        private final boolean expanded;
+        private final int attributeCount;
+        private final Node[] children;
+        private final int[] childOffsets;
+        private final int height;
+        private final int depth;
+        // Base da área desenhada (caixa, círculos dos atributos e subárvore), relativa ao nó
+        private final int bottom;
+        private final int ownBottom;
+        // Maior base entre os filhos 0..i, relativa ao nó: crescente, permite busca binária pelo clip
+        private final int[] childReach;
+
+        private Node(Kind kind, XsdElementUse use, XsdComplexType complexType, String nameLabel, String typeLabel,
+                     String occurrence, boolean root, boolean expandable, boolean expanded, int attributeCount,
+                     List<Node> children) {
+            this.kind = kind;
+            this.use = use;
+            this.complexType = complexType;
+            this.nameLabel = nameLabel;
+            this.typeLabel = typeLabel;
+            this.occurrence = occurrence;
+            this.root = root;
+            this.expandable = expandable;
+            this.expanded = expanded;
+            this.attributeCount = attributeCount;
+            this.children = children.toArray(new Node[0]);
+            this.childOffsets = new int[this.children.length];
+            this.childReach = new int[this.children.length];
+            // Os círculos dos atributos podem passar da base da caixa; +1 pela borda
+            this.ownBottom = Math.max(ELEMENT_HEIGHT, ATTRIBUTE_TOP + ATTRIBUTE_SIZE * attributeCount) + 1;
+
+            // Filhos empilhados de cima para baixo, cada um ocupando a altura da sua subárvore
+            int offset = 0;
+            int childDepth = -1;
+            int reach = ownBottom;
+            for (int i = 0; i < this.children.length; i++) {
+                childOffsets[i] = offset;
+                reach = Math.max(reach, offset + this.children[i].bottom);
+                childReach[i] = reach;
+                offset += this.children[i].height + VERTICAL_SPACING / 2;
+                childDepth = Math.max(childDepth, this.children[i].depth);
+            }
+            this.height = Math.max(ELEMENT_HEIGHT, offset);
+            this.depth = childDepth + 1;
+            this.bottom = reach;
+        }
+
+        /**
+         * @param use Ocorrência do elemento
+         * @param nameLabel Nome já truncado para a largura da caixa
+         * @param typeLabel Tipo já truncado para a largura da caixa
+         * @param expandable true se há filhos para exibir (inline ou do tipo referenciado)
+         * @param expanded true se os filhos estão sendo exibidos
+         * @param children Layout dos filhos exibidos
+         */
+        static Node element(XsdElementUse use, String nameLabel, String typeLabel, boolean expandable, boolean expanded,
+                            List<Node> children) {
+            XsdElement element = use.getElement();
+            return new Node(Kind.ELEMENT, use, null, nameLabel, typeLabel, element.getOccurrenceString(),
+                    element.isRoot(), expandable, expanded, element.getAttributes().size(), children);
+        }
+
+        /**
+         * @param complexType Tipo complexo de topo
+         * @param nameLabel Nome do tipo já truncado para a largura da caixa
+         * @param children Layout dos elementos do tipo
+         */
+        static Node complexType(XsdComplexType complexType, String nameLabel, List<Node> children) {
+            return new Node(Kind.COMPLEX_TYPE, null, complexType, nameLabel, null, "", false, false, false, 0, children);
+        }
+
+        /**
+         * Cópia com um filho trocado: os filhos seguintes são deslocados pela diferença de altura
+         * e a altura e a profundidade são refeitas; as subárvores dos demais filhos são reaproveitadas.
+         */
+        private Node withChild(int index, Node child) {
+            List<Node> newChildren = new ArrayList<>(Arrays.asList(children));
+            newChildren.set(index, child);
+            return new Node(kind, use, complexType, nameLabel, typeLabel, occurrence, root, expandable, expanded,
+                    attributeCount, newChildren);
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return Ocorrência do elemento, ou null para a caixa de um tipo complexo
+         */
+        XsdElementUse getUse() {
+            return use;
+        }
+
+        /**
+         * @return Tipo da caixa de um tipo complexo de topo, ou null para um elemento
+         */
+        XsdComplexType getComplexType() {
+            return complexType;
+        }
+
+        String getNameLabel() {
+            return nameLabel;
+        }
+
+        String getTypeLabel() {
+            return typeLabel;
+        }
+
+        String getOccurrence() {
+            return occurrence;
+        }
+
+        boolean isRoot() {
+            return root;
+        }
+
+        boolean isExpandable() {
+            return expandable;
+        }
+
+        boolean isExpanded() {
+            return expanded;
+        }
+
+        int getAttributeCount() {
+            return attributeCount;
+        }
+
+        /**
+         * @return Altura ocupada pela subárvore exibida
+         */
+        int getHeight() {
+            return height;
+        }
+
+        /**
+         * @return Níveis exibidos abaixo deste nó
+         */
+        int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return Base da área desenhada pela subárvore, relativa ao nó (inclui círculos de atributos)
+         */
+        int getBottom() {
+            return bottom;
+        }
+    }
+
+    /**
+     * Nó com a sua posição absoluta no painel.
+     */
+    static final class Placement {
+        private final Node node;
+        private final Placement parent;
+        private final int x;
+        private final int y;
+
+        Placement(Node node, Placement parent, int x, int y) {
+            this.node = node;
+            this.parent = parent;
+            this.x = x;
+            this.y = y;
+        }
+
+        Node getNode() {
+            return node;
+        }
+
+        /**
+         * @return Posição do nó pai, de onde sai a linha de conexão, ou null no primeiro nível
+         */
+        Placement getParent() {
+            return parent;
+        }
+
+        int getX() {
+            return x;
+        }
+
+        int getY() {
+            return y;
+        }
+
+        boolean contains(int px, int py) {
+            return px >= x && px <= x + ELEMENT_WIDTH && py >= y && py <= y + ELEMENT_HEIGHT;
+        }
+
+        /**
+         * @return Botão de expandir/colapsar, no canto superior esquerdo da caixa
+         */
+        Rectangle getExpandButtonBounds() {
+            return new Rectangle(x + EXPAND_BUTTON_OFFSET, y + EXPAND_BUTTON_OFFSET, EXPAND_BUTTON_SIZE, EXPAND_BUTTON_SIZE);
+        }
+
+        /**
+         * @return Círculo do atributo de índice informado, à direita da caixa
+         */
+        Rectangle getAttributeBounds(int index) {
+            return new Rectangle(x + ELEMENT_WIDTH + ATTRIBUTE_GAP, y + ATTRIBUTE_TOP + ATTRIBUTE_SIZE * index,
+                    ATTRIBUTE_SIZE, ATTRIBUTE_SIZE);
+        }
+
+        /**
+         * A caixa e os círculos dos atributos, sem os filhos.
+         */
+        boolean boxIntersects(Rectangle area) {
+            int right = x + ELEMENT_WIDTH + (node.attributeCount > 0 ? ATTRIBUTE_GAP + ATTRIBUTE_SIZE : 0) + 1;
+            return x <= area.x + area.width && right >= area.x && y <= area.y + area.height && y + node.ownBottom >= area.y;
+        }
+
+        /**
+         * A caixa e toda a subárvore exibida à direita dela.
+         */
+        boolean subtreeIntersects(Rectangle area) {
+            int right = x + node.depth * HORIZONTAL_SPACING + ELEMENT_WIDTH + ATTRIBUTE_GAP + ATTRIBUTE_SIZE + 1;
+            return x <= area.x + area.width && right >= area.x && y <= area.y + area.height && y + node.bottom >= area.y;
+        }
+
+        /**
+         * A linha que liga o nó pai a este nó.
+         */
+        boolean connectionIntersects(Rectangle area) {
+            return parent != null && area.intersectsLine(parent.x + ELEMENT_WIDTH, parent.y + ELEMENT_HEIGHT / 2,
+                    x, y + ELEMENT_HEIGHT / 2);
+        }
+    }
+
+    /**
+     * Parte de uma caixa atingida por um ponto.
+     */
+    enum Part {
+        EXPAND_BUTTON,
+        BOX,
+        ATTRIBUTE
+    }
+
+    /**
+     * Resultado de hitTest: a caixa, a parte atingida e, para um atributo, o seu índice.
+     */
+    static final class Hit {
+        private final Placement placement;
+        private final Part part;
+        private final int attributeIndex;
+
+        private Hit(Placement placement, Part part, int attributeIndex) {
+            this.placement = placement;
+            this.part = part;
+            this.attributeIndex = attributeIndex;
+        }
+
+        Placement getPlacement() {
+            return placement;
+        }
+
+        Part getPart() {
+            return part;
+        }
+
+        /**
+         * @return Índice do atributo em XsdElement.getAttributes(), ou -1 se a parte não é um atributo
+         */
+        int getAttributeIndex() {
+            return attributeIndex;
+        }
+    }
+
+    /**
+     * Recebe, na ordem de pintura, o que cruza a área a pintar.
+     */
+    interface Painter {
+        /**
+         * Linha de conexão entre o pai e o nó.
+         */
+        void connection(Placement parent, Placement child);
+
+        /**
+         * Caixa do nó, sem os filhos.
+         */
+        void box(Placement placement);
+    }
+
+    private final Font font;
+    private final Node[] blocks;
+    private final int[] blockY;
+    private final int[] blockReach;
+    private final int width;
+    private final int height;
+
+    /**
+     * @param font Fonte usada para truncar os textos
+     * @param blocks Elementos raiz e tipos complexos de topo, na ordem de exibição
+     */
+    XsdDiagramLayout(Font font, List<Node> blocks) {
+        this.font = font;
+        this.blocks = blocks.toArray(new Node[0]);
+        this.blockY = new int[this.blocks.length];
+        this.blockReach = new int[this.blocks.length];
+
+        int y = MARGIN;
+        int maxDepth = 0;
+        int reach = 0;
+        for (int i = 0; i < this.blocks.length; i++) {
+            blockY[i] = y;
+            reach = Math.max(reach, y + this.blocks[i].bottom);
+            blockReach[i] = reach;
+            y += this.blocks[i].height + VERTICAL_SPACING;
+            maxDepth = Math.max(maxDepth, this.blocks[i].depth);
+        }
+        this.width = Math.max(MIN_WIDTH, (maxDepth + 1) * HORIZONTAL_SPACING + 2 * MARGIN);
+        this.height = Math.max(MIN_HEIGHT, y - MARGIN + 2 * MARGIN);
+    }
+
+    /**
+     * Layout com a subárvore de uma caixa trocada, sem percorrer o resto do diagrama: só os ancestrais
+     * são refeitos (altura, profundidade e deslocamento dos irmãos abaixo do caminho), e todas as outras
+     * subárvores são reaproveitadas. O custo é o da nova subárvore mais os irmãos ao longo do caminho.
+     * @param placement Caixa deste layout, obtida por hitTest ou query (traz a cadeia de ancestrais)
+     * @param replacement Novo layout da subárvore da caixa
+     */
+    XsdDiagramLayout replace(Placement placement, Node replacement) {
+        Node current = replacement;
+        Placement child = placement;
+        while (child.parent != null) {
+            Placement parent = child.parent;
+            // Posições relativas são crescentes: o índice do filho sai por busca binária
+            int index = Arrays.binarySearch(parent.node.childOffsets, child.y - parent.y);
+            current = parent.node.withChild(index, current);
+            child = parent;
+        }
+        Node[] newBlocks = blocks.clone();
+        newBlocks[Arrays.binarySearch(blockY, child.y)] = current;
+        return new XsdDiagramLayout(font, Arrays.asList(newBlocks));
+    }
+
+    /**
+     * Layout com blocos de topo trocados (ex.: declarações refeitas pelo parse incremental). Os demais
+     * blocos são reaproveitados sem visitar os nós; só as posições verticais dos blocos são refeitas.
+     * @param replacements Novo layout de cada bloco trocado, pelo índice do bloco
+     */
+    XsdDiagramLayout replaceBlocks(Map<Integer, Node> replacements) {
+        Node[] newBlocks = blocks.clone();
+        replacements.forEach((index, node) -> newBlocks[index] = node);
+        return new XsdDiagramLayout(font, Arrays.asList(newBlocks));
+    }
+
+    /**
+     * Procura no bloco de topo um nó exibido que atenda ao teste, com pilha explícita.
+     */
+    boolean blockContains(int index, Predicate<Node> test) {
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(blocks[index]);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (test.test(node)) {
+                return true;
+            }
+            for (Node child : node.children) {
+                stack.push(child);
+            }
+        }
+        return false;
+    }
+
+    int getBlockCount() {
+        return blocks.length;
+    }
+
+    Node getBlock(int index) {
+        return blocks[index];
+    }
+
+    int getBlockY(int index) {
+        return blockY[index];
+    }
+
+    /**
+     * Compara com o layout anterior para saber a partir de onde o diagrama mudou.
+     * Uma mudança de expansão visível sempre altera a altura do bloco de topo que a contém.
+     * @return Topo do primeiro bloco de topo cujo tamanho difere, ou -1 se nenhum difere
+     */
+    int firstChangedY(XsdDiagramLayout previous) {
+        int count = Math.min(blocks.length, previous.blocks.length);
+        for (int i = 0; i < count; i++) {
+            if (blocks[i].height != previous.blocks[i].height || blocks[i].bottom != previous.blocks[i].bottom ||
+                    blocks[i].depth != previous.blocks[i].depth) {
+                return blockY[i];
+            }
+        }
+        if (blocks.length != previous.blocks.length) {
+            return count < blocks.length ? blockY[count] : previous.blockY[count];
+        }
+        return -1;
+    }
+
+    Font getFont() {
+        return font;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Entrega ao painter apenas as linhas e caixas que cruzam a área, na ordem de pintura
+     * (pai antes dos filhos, filhos de cima para baixo, cada caixa depois da linha que a liga ao pai).
+     * Subárvores inteiras fora da área são descartadas sem visitar os nós, e os filhos visíveis
+     * de cada nó são localizados por busca binária: o custo depende do que está na tela, não do tamanho do schema.
+     * @param clip Área a pintar, em coordenadas do painel
+     */
+    void paint(Rectangle clip, Painter painter) {
+        // Margem de um pixel para a espessura das bordas e linhas
+        Rectangle area = new Rectangle(clip);
+        area.grow(1, 1);
+        traverse(area, true, painter);
+    }
+
+    /**
+     * Consulta por área: caixas (com os círculos dos atributos) que cruzam a área, na ordem de pintura.
+     */
+    void query(Rectangle area, Consumer<Placement> action) {
+        traverse(area, false, new Painter() {
+            @Override
+            public void connection(Placement parent, Placement child) {
+            }
+
+            @Override
+            public void box(Placement placement) {
+                action.accept(placement);
+            }
+        });
+    }
+
+    /**
+     * Consulta por ponto: o botão de expandir tem prioridade sobre o corpo da caixa, e este sobre os atributos.
+     * Desce só pelos ramos cuja área contém o ponto, com busca binária em cada nível.
+     * @return Parte atingida, ou null se o ponto não está sobre nenhum elemento
+     */
+    Hit hitTest(int px, int py) {
+        Hit[] best = new Hit[1];
+        query(new Rectangle(px, py, 0, 0), placement -> {
+            Node node = placement.node;
+            if (node.kind != Kind.ELEMENT) {
+                return;
+            }
+            Hit hit = null;
+            if (node.expandable && containsInclusive(placement.getExpandButtonBounds(), px, py)) {
+                hit = new Hit(placement, Part.EXPAND_BUTTON, -1);
+            } else if (placement.contains(px, py)) {
+                hit = new Hit(placement, Part.BOX, -1);
+            } else if (node.attributeCount > 0) {
+                int index = Math.min((py - placement.y - ATTRIBUTE_TOP) / ATTRIBUTE_SIZE, node.attributeCount - 1);
+                if (py >= placement.y + ATTRIBUTE_TOP && containsInclusive(placement.getAttributeBounds(index), px, py)) {
+                    hit = new Hit(placement, Part.ATTRIBUTE, index);
+                }
+            }
+            // Entre partes de mesma prioridade vale a primeira; atributos sobrepostos: o pintado por último
+            if (hit != null && (best[0] == null || hit.part.ordinal() < best[0].part.ordinal() ||
+                    (hit.part == Part.ATTRIBUTE && best[0].part == Part.ATTRIBUTE))) {
+                best[0] = hit;
+            }
+        });
+        return best[0];
+    }
+
+    private static boolean containsInclusive(Rectangle bounds, int px, int py) {
+        return px >= bounds.x && px <= bounds.x + bounds.width && py >= bounds.y && py <= bounds.y + bounds.height;
+    }
+
+    private void traverse(Rectangle area, boolean connections, Painter painter) {
+        Deque<Placement> stack = new ArrayDeque<>();
+        pushVisible(stack, null, blocks, blockY, blockReach, MARGIN, 0, area, connections);
+        while (!stack.isEmpty()) {
+            Placement placement = stack.pop();
+            if (connections && placement.connectionIntersects(area)) {
+                painter.connection(placement.parent, placement);
+            }
+            if (placement.boxIntersects(area)) {
+                painter.box(placement);
+            }
+            Node node = placement.node;
+            if (node.children.length > 0 && placement.subtreeIntersects(area)) {
+                pushVisible(stack, placement, node.children, node.childOffsets, node.childReach,
+                        placement.x + HORIZONTAL_SPACING, placement.y, area, connections);
+            }
+        }
+    }
+
+    /**
+     * Empilha, do último para o primeiro, os nós cuja subárvore (ou linha de conexão, se pedida) cruza a área.
+     * @param offsets Posição vertical de cada nó relativa a baseY
+     * @param reach Maior base entre os nós 0..i, relativa a baseY
+     */
+    private static void pushVisible(Deque<Placement> stack, Placement parent, Node[] nodes, int[] offsets, int[] reach,
+                                    int x, int baseY, Rectangle area, boolean connections) {
+        // Primeiro nó cuja área (ou a de algum anterior) chega ao topo da área visível
+        int low = 0;
+        int high = nodes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (baseY + reach[middle] < area.y) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        // Abaixo da área só interessam as linhas que a atravessam vindas do pai
+        int areaBottom = area.y + area.height;
+        boolean connectionsCross = connections && parent != null && parent.y + ELEMENT_HEIGHT / 2 <= areaBottom &&
+                parent.x + ELEMENT_WIDTH <= area.x + area.width && x >= area.x;
+
+        List<Placement> visible = new ArrayList<>();
+        for (int i = low; i < nodes.length; i++) {
+            Placement placement = new Placement(nodes[i], parent, x, baseY + offsets[i]);
+            if (placement.y > areaBottom && !connectionsCross) {
+                break;
+            }
+            if (placement.subtreeIntersects(area) || (connections && placement.connectionIntersects(area))) {
+                visible.add(placement);
+            }
+        }
+        for (int i = visible.size() - 1; i >= 0; i--) {
+            stack.push(visible.get(i));
+        }
+    }
+}
\ No newline at end of file
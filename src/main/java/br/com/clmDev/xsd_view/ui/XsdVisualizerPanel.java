@@ -1,23 +1,39 @@
 package br.com.clmDev.xsd_view.ui;
 
 import br.com.clmDev.xsd_view.model.*;
+import br.com.clmDev.xsd_view.parser.XsdIncrementalParser;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.font.FontRenderContext;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
 
 public class XsdVisualizerPanel extends JPanel {
     private XsdStructure structure;
     private Graphics2D g2d;
     private FontMetrics fontMetrics;
-    private List<ElementBox> elementBoxes = new ArrayList<>();
-    private Map<XsdElement, Boolean> expandedState = new HashMap<>();
+    // Posições e textos calculados na última mudança de estrutura ou expansão; a pintura só lê o layout
+    private XsdDiagramLayout layout;
+    // Estado por ocorrência: um mesmo elemento de tipo compartilhado pode estar expandido num caminho e não em outro
+    private Map<XsdElementUse, Boolean> expandedState = new HashMap<>();
+    // Regiões alteradas desde a última pintura, já unidas; enviadas ao repaint uma vez por quadro
+    private final List<Rectangle> dirtyRegions = new ArrayList<>();
+    private final Timer repaintTimer = new Timer(FRAME_MILLIS, e -> flushDirtyRegions());
 
     // Cores para diferentes tipos
     private static final Color ELEMENT_COLOR = new Color(173, 216, 230);
@@ -28,20 +44,22 @@ public class XsdVisualizerPanel extends JPanel {
     private static final Color TEXT_COLOR = Color.BLACK;
     private static final Color CONNECTION_COLOR = new Color(100, 100, 100);
     private static final Color EXPAND_BUTTON_COLOR = new Color(220, 220, 220);
+    private static final Color TRUNCATION_COLOR = new Color(200, 0, 0);
 
     // Configurações de layout
-    private static final int ELEMENT_WIDTH = 140;
-    private static final int ELEMENT_HEIGHT = 60;
-    private static final int HORIZONTAL_SPACING = 180;
-    private static final int VERTICAL_SPACING = 80;
-    private static final int MARGIN = 50;
-    private static final int EXPAND_BUTTON_SIZE = 16;
+    private static final int ELEMENT_WIDTH = XsdDiagramLayout.ELEMENT_WIDTH;
+    private static final int ELEMENT_HEIGHT = XsdDiagramLayout.ELEMENT_HEIGHT;
+    private static final int MARGIN = XsdDiagramLayout.MARGIN;
+
+    // Redesenho: intervalo de um quadro e quantidade de regiões antes de uni-las num só retângulo
+    private static final int FRAME_MILLIS = 16;
+    private static final int MAX_DIRTY_REGIONS = 8;
 
     public XsdVisualizerPanel(XsdStructure structure) {
         this.structure = structure;
         setBackground(Color.WHITE);
-        initializeExpandedState();
-        calculatePanelSize();
+        repaintTimer.setRepeats(false);
+        updateLayout();
 
         addMouseListener(new MouseAdapter() {
             @Override
@@ -51,98 +69,190 @@ public class XsdVisualizerPanel extends JPanel {
         });
     }
 
-    private void initializeExpandedState() {
-        // Inicializar apenas elementos raiz como expandidos (primeiro nível)
-        for (XsdElement element : structure.getRootElements()) {
-            expandedState.put(element, true);
-            // Inicializar filhos como colapsados por padrão
-            initializeChildrenAsCollapsed(element);
-        }
-    }
-
-    private void initializeChildrenAsCollapsed(XsdElement element) {
-        for (XsdElement child : element.getChildren()) {
-            expandedState.put(child, false);
-            initializeChildrenAsCollapsed(child);
-        }
+    /**
+     * Recalcula o layout e o tamanho do painel. Chamado só quando a estrutura ou a expansão mudam.
+     */
+    private void updateLayout() {
+        layout = buildLayout();
+        updatePreferredSize();
     }
 
-    private void calculatePanelSize() {
+    private void updatePreferredSize() {
         if (structure.isEmpty()) {
-            setPreferredSize(new Dimension(400, 200));
+            int width = 400;
+            if (structure.isTruncated()) {
+                FontMetrics metrics = getFontMetrics(getFont().deriveFont(Font.BOLD));
+                width = Math.max(width, metrics.stringWidth(structure.getTruncationMessage()) + 2 * MARGIN);
+            }
+            setPreferredSize(new Dimension(width, 200));
             return;
         }
 
-        int maxDepth = calculateMaxDepth();
-        int totalHeight = calculateTotalHeight();
-
-        int width = Math.max(800, (maxDepth + 1) * HORIZONTAL_SPACING + 2 * MARGIN);
-        int height = Math.max(600, totalHeight + 2 * MARGIN);
-
-        setPreferredSize(new Dimension(width, height));
+        setPreferredSize(new Dimension(layout.getWidth(), layout.getHeight()));
         revalidate();
     }
 
-    private int calculateTotalHeight() {
-        int totalHeight = 0;
-        for (XsdElement element : structure.getRootElements()) {
-            totalHeight += calculateElementHeight(element, 0);
-            totalHeight += VERTICAL_SPACING;
+    private XsdDiagramLayout buildLayout() {
+        Font font = getFont();
+        FontMetrics metrics = getFontMetrics(font);
+        List<XsdDiagramLayout.Node> blocks = new ArrayList<>();
+        int blockCount = structure.getRootElements().size() + structure.getComplexTypes().size();
+        for (int i = 0; i < blockCount; i++) {
+            blocks.add(layoutBlock(i, metrics));
         }
+        return new XsdDiagramLayout(font, blocks);
+    }
 
-        for (XsdComplexType complexType : structure.getComplexTypes()) {
-            totalHeight += calculateComplexTypeHeight(complexType);
-            totalHeight += VERTICAL_SPACING;
-        }
+    /**
+     * Layout de um bloco de topo: primeiro os elementos raiz, depois os tipos complexos independentes.
+     * @param index Índice do bloco, na ordem de exibição
+     */
+    private XsdDiagramLayout.Node layoutBlock(int index, FontMetrics metrics) {
+        List<XsdElement> rootElements = structure.getRootElements();
+        if (index < rootElements.size()) {
+            return layoutElement(XsdElementUse.root(rootElements.get(index), index), new HashSet<>(), metrics);
+        }
+
+        XsdComplexType complexType = structure.getComplexTypes().get(index - rootElements.size());
+        Set<XsdComplexType> typePath = new HashSet<>();
+        typePath.add(complexType);
+        List<XsdDiagramLayout.Node> elements = new ArrayList<>();
+        List<XsdElement> typeElements = complexType.getElements();
+        for (int i = 0; i < typeElements.size(); i++) {
+            elements.add(layoutElement(XsdElementUse.inType(complexType, typeElements.get(i), i), typePath, metrics));
+        }
+        String name = truncateText(metrics, "<<" + complexType.getName() + ">>", ELEMENT_WIDTH - 10);
+        return XsdDiagramLayout.Node.complexType(complexType, name, elements);
+    }
 
-        return totalHeight;
+    /**
+     * @return Índice do bloco de topo da declaração, ou -1 se ela não está na estrutura
+     */
+    private int blockIndexOf(XsdType declaration) {
+        List<XsdElement> rootElements = structure.getRootElements();
+        for (int i = 0; i < rootElements.size(); i++) {
+            if (rootElements.get(i) == declaration) {
+                return i;
+            }
+        }
+        List<XsdComplexType> complexTypes = structure.getComplexTypes();
+        for (int i = 0; i < complexTypes.size(); i++) {
+            if (complexTypes.get(i) == declaration) {
+                return rootElements.size() + i;
+            }
+        }
+        return -1;
     }
 
-    private int calculateElementHeight(XsdElement element, int level) {
-        int height = ELEMENT_HEIGHT;
+    /**
+     * Elemento exibido cujo tipo declarado é um dos nomes, com ou sem prefixo de namespace
+     * (a mesma regra de {@link XsdStructure#resolveType}).
+     */
+    private static boolean declaresType(XsdDiagramLayout.Node node, Set<String> typeNames) {
+        if (node.getUse() == null) {
+            return false;
+        }
+        String declaredType = node.getUse().getElement().getDeclaredType();
+        if (declaredType == null) {
+            return false;
+        }
+        return typeNames.contains(declaredType) || typeNames.contains(declaredType.substring(declaredType.indexOf(':') + 1));
+    }
 
-        if (expandedState.getOrDefault(element, false) && !element.getChildren().isEmpty()) {
-            int childrenHeight = 0;
-            for (XsdElement child : element.getChildren()) {
-                childrenHeight += calculateElementHeight(child, level + 1);
-                childrenHeight += VERTICAL_SPACING / 2;
+    /**
+     * Monta o layout do elemento e dos filhos expandidos com uma pilha explícita, sem recursão por nível:
+     * cada nó é criado quando fechado, já com o layout de todos os filhos.
+     */
+    private XsdDiagramLayout.Node layoutElement(XsdElementUse use, Set<XsdComplexType> typePath, FontMetrics metrics) {
+        Deque<UseFrame> stack = new ArrayDeque<>();
+        stack.push(openFrame(use, typePath));
+        while (true) {
+            UseFrame frame = stack.peek();
+            if (frame.next < frame.children.size()) {
+                int index = frame.next++;
+                stack.push(openFrame(frame.use.child(frame.children.get(index), index), typePath));
+                continue;
+            }
+            stack.pop();
+            XsdDiagramLayout.Node node = closeFrame(frame, typePath, metrics);
+            if (stack.isEmpty()) {
+                return node;
             }
-            height = Math.max(height, childrenHeight);
+            stack.peek().laidOut.add(node);
         }
-
-        return height;
     }
 
-    private int calculateComplexTypeHeight(XsdComplexType complexType) {
-        int height = ELEMENT_HEIGHT;
-        int childrenHeight = 0;
+    /**
+     * Filhos que o elemento pode exibir: os inline ou os do tipo referenciado, resolvido sob demanda.
+     * Um tipo que já está sendo expandido no caminho atual não é expandido de novo (tipos recursivos).
+     */
+    private List<XsdElement> contentChildren(XsdElement element, Set<XsdComplexType> typePath) {
+        if (element.hasChildren()) {
+            return element.getChildren();
+        }
+        XsdComplexType complexType = element.resolveType(structure);
+        if (complexType == null || typePath.contains(complexType)) {
+            return Collections.emptyList();
+        }
+        return complexType.getElements();
+    }
 
-        for (XsdElement element : complexType.getElements()) {
-            childrenHeight += calculateElementHeight(element, 1);
-            childrenHeight += VERTICAL_SPACING / 2;
+    /**
+     * Filhos visíveis: vazio enquanto o elemento estiver colapsado, sem resolver o tipo.
+     */
+    private List<XsdElement> expandedChildren(XsdElementUse use, Set<XsdComplexType> typePath) {
+        if (!isExpanded(use)) {
+            return Collections.emptyList();
         }
+        return contentChildren(use.getElement(), typePath);
+    }
 
-        return Math.max(height, childrenHeight);
+    /**
+     * Elementos raiz começam expandidos (primeiro nível); os demais, colapsados.
+     */
+    private boolean isExpanded(XsdElementUse use) {
+        return expandedState.getOrDefault(use, use.isTopLevel());
     }
 
-    private int calculateMaxDepth() {
-        int maxDepth = 0;
-        for (XsdElement element : structure.getRootElements()) {
-            maxDepth = Math.max(maxDepth, calculateElementDepth(element, 0));
-        }
-        return maxDepth;
+    /**
+     * Registra no caminho o tipo cujos elementos serão exibidos como filhos.
+     * @return Tipo registrado ou null se os filhos são inline
+     */
+    private XsdComplexType enterType(XsdElement element, Set<XsdComplexType> typePath) {
+        if (element.hasChildren()) {
+            return null;
+        }
+        XsdComplexType complexType = element.resolveType(structure);
+        typePath.add(complexType);
+        return complexType;
     }
 
-    private int calculateElementDepth(XsdElement element, int currentDepth) {
-        if (!expandedState.getOrDefault(element, false)) {
-            return currentDepth;
-        }
+    /**
+     * Abre o nó numa travessia com pilha explícita: calcula os filhos visíveis e entra no tipo deles.
+     */
+    private UseFrame openFrame(XsdElementUse use, Set<XsdComplexType> typePath) {
+        UseFrame frame = new UseFrame(use);
+        // Expansível se há filhos (inline ou do tipo referenciado), mesmo colapsado
+        frame.expandable = !contentChildren(use.getElement(), typePath).isEmpty();
+        frame.children = expandedChildren(use, typePath);
+        if (!frame.children.isEmpty()) {
+            frame.enteredType = enterType(use.getElement(), typePath);
+        }
+        return frame;
+    }
 
-        int maxChildDepth = currentDepth;
-        for (XsdElement child : element.getChildren()) {
-            maxChildDepth = Math.max(maxChildDepth, calculateElementDepth(child, currentDepth + 1));
-        }
-        return maxChildDepth;
+    /**
+     * Fecha o nó depois de todos os filhos: sai do tipo e cria o nó do layout com os textos já truncados.
+     */
+    private XsdDiagramLayout.Node closeFrame(UseFrame frame, Set<XsdComplexType> typePath, FontMetrics metrics) {
+        if (!frame.children.isEmpty()) {
+            typePath.remove(frame.enteredType);
+        }
+        XsdElement element = frame.use.getElement();
+        String name = truncateText(metrics, element.getName(), ELEMENT_WIDTH - 30); // Reservar espaço para botão
+        String type = truncateText(metrics, "(" + element.getType() + ")", ELEMENT_WIDTH - 30);
+        return XsdDiagramLayout.Node.element(frame.use, name, type, frame.expandable, isExpanded(frame.use),
+                frame.laidOut);
     }
 
     @Override
@@ -153,14 +263,31 @@ public class XsdVisualizerPanel extends JPanel {
         g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 
         fontMetrics = g2d.getFontMetrics();
-        elementBoxes.clear();
+
+        // Os textos foram truncados com a fonte do layout; outra fonte (troca de tema) pede novo layout
+        if (!Objects.equals(layout.getFont(), getFont())) {
+            updateLayout();
+        }
 
         if (structure.isEmpty()) {
-            drawEmptyMessage();
-            return;
+            // Sem nós por causa de um limite, o aviso de truncamento já explica o motivo
+            if (!structure.isTruncated()) {
+                drawEmptyMessage();
+            }
+        } else {
+            drawSchema();
+        }
+
+        // Estrutura parcial (limite de recursos atingido no parse): exibida com o aviso acima dela
+        if (structure.isTruncated()) {
+            drawTruncationMessage();
         }
+    }
 
-        drawSchema();
+    private void drawTruncationMessage() {
+        g2d.setColor(TRUNCATION_COLOR);
+        g2d.setFont(g2d.getFont().deriveFont(Font.BOLD));
+        g2d.drawString(structure.getTruncationMessage(), MARGIN, MARGIN / 2 + fontMetrics.getAscent() / 2);
     }
 
     private void drawEmptyMessage() {
@@ -175,102 +302,92 @@ public class XsdVisualizerPanel extends JPanel {
         g2d.drawString(message, x, y);
     }
 
+    /**
+     * Desenha, na ordem do layout, só as linhas e caixas que cruzam a área a pintar (o clip):
+     * ao rolar, o custo depende da parte visível e não do tamanho do schema.
+     */
     private void drawSchema() {
-        int startY = MARGIN;
-
-        // Desenhar elementos raiz
-        for (XsdElement element : structure.getRootElements()) {
-            startY += drawElement(element, MARGIN, startY, 0);
-            startY += VERTICAL_SPACING;
+        Rectangle clip = g2d.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
         }
 
-        // Desenhar tipos complexos independentes
-        for (XsdComplexType complexType : structure.getComplexTypes()) {
-            startY += drawComplexType(complexType, MARGIN, startY);
-            startY += VERTICAL_SPACING;
-        }
+        layout.paint(clip, new XsdDiagramLayout.Painter() {
+            @Override
+            public void connection(XsdDiagramLayout.Placement parent, XsdDiagramLayout.Placement child) {
+                // Desenhar linha de conexão
+                g2d.setColor(CONNECTION_COLOR);
+                g2d.drawLine(parent.getX() + ELEMENT_WIDTH, parent.getY() + ELEMENT_HEIGHT / 2,
+                        child.getX(), child.getY() + ELEMENT_HEIGHT / 2);
+            }
+
+            @Override
+            public void box(XsdDiagramLayout.Placement placement) {
+                if (placement.getNode().getKind() == XsdDiagramLayout.Kind.COMPLEX_TYPE) {
+                    drawComplexTypeBox(placement);
+                } else {
+                    drawElementBox(placement);
+                }
+            }
+        });
     }
 
-    private int drawElement(XsdElement element, int x, int y, int level) {
-        Color elementColor = element.isRoot() ? ROOT_ELEMENT_COLOR : ELEMENT_COLOR;
+    /**
+     * Desenha a caixa do elemento, o botão de expandir e os atributos, sem os filhos.
+     */
+    private void drawElementBox(XsdDiagramLayout.Placement placement) {
+        XsdDiagramLayout.Node node = placement.getNode();
+        int x = placement.getX();
+        int y = placement.getY();
+        Color elementColor = node.isRoot() ? ROOT_ELEMENT_COLOR : ELEMENT_COLOR;
 
         // Desenhar caixa do elemento
-        ElementBox box = new ElementBox(x, y, ELEMENT_WIDTH, ELEMENT_HEIGHT, element);
-        elementBoxes.add(box);
-
         g2d.setColor(elementColor);
         g2d.fillRect(x, y, ELEMENT_WIDTH, ELEMENT_HEIGHT);
         g2d.setColor(BORDER_COLOR);
         g2d.drawRect(x, y, ELEMENT_WIDTH, ELEMENT_HEIGHT);
 
-        // Desenhar botão de expandir/colapsar se há filhos
-        if (!element.getChildren().isEmpty()) {
-            drawExpandCollapseButton(x, y, element);
+        // Desenhar botão de expandir/colapsar se há filhos (inline ou do tipo referenciado)
+        if (node.isExpandable()) {
+            drawExpandCollapseButton(placement.getExpandButtonBounds(), node.isExpanded());
         }
 
         // Desenhar texto do elemento
         g2d.setColor(TEXT_COLOR);
         Font boldFont = g2d.getFont().deriveFont(Font.BOLD);
         g2d.setFont(boldFont);
-
-        String name = truncateText(element.getName(), ELEMENT_WIDTH - 30); // Reservar espaço para botão
-        g2d.drawString(name, x + 25, y + 16);
+        g2d.drawString(node.getNameLabel(), x + 25, y + 16);
 
         g2d.setFont(g2d.getFont().deriveFont(Font.PLAIN));
-        String type = truncateText("(" + element.getType() + ")", ELEMENT_WIDTH - 30);
-        g2d.drawString(type, x + 25, y + 32);
+        g2d.drawString(node.getTypeLabel(), x + 25, y + 32);
 
-        String occurrence = element.getOccurrenceString();
+        String occurrence = node.getOccurrence();
         if (!occurrence.isEmpty()) {
             g2d.setColor(Color.BLUE);
             g2d.drawString(occurrence, x + 25, y + 48);
         }
 
         // Desenhar atributos como pequenos círculos
-        int attrX = x + ELEMENT_WIDTH + 5;
-        int attrY = y + 10;
-        for (XsdAttribute attr : element.getAttributes()) {
+        for (int i = 0; i < node.getAttributeCount(); i++) {
+            Rectangle attr = placement.getAttributeBounds(i);
             g2d.setColor(ATTRIBUTE_COLOR);
-            g2d.fillOval(attrX, attrY, 15, 15);
+            g2d.fillOval(attr.x, attr.y, attr.width, attr.height);
             g2d.setColor(BORDER_COLOR);
-            g2d.drawOval(attrX, attrY, 15, 15);
-
-            attrY += 15;
+            g2d.drawOval(attr.x, attr.y, attr.width, attr.height);
         }
-
-        // Desenhar filhos recursivamente apenas se expandido
-        int totalChildHeight = 0;
-        if (expandedState.getOrDefault(element, false) && !element.getChildren().isEmpty()) {
-            int childX = x + HORIZONTAL_SPACING;
-            int childY = y;
-
-            for (XsdElement child : element.getChildren()) {
-                // Desenhar linha de conexão
-                g2d.setColor(CONNECTION_COLOR);
-                g2d.drawLine(x + ELEMENT_WIDTH, y + ELEMENT_HEIGHT / 2, childX, childY + ELEMENT_HEIGHT / 2);
-
-                int childHeight = drawElement(child, childX, childY, level + 1);
-                childY += childHeight + VERTICAL_SPACING / 2;
-                totalChildHeight += childHeight + VERTICAL_SPACING / 2;
-            }
-        }
-
-        return Math.max(ELEMENT_HEIGHT, totalChildHeight);
     }
 
-    private void drawExpandCollapseButton(int x, int y, XsdElement element) {
-        boolean isExpanded = expandedState.getOrDefault(element, false);
-
+    private void drawExpandCollapseButton(Rectangle button, boolean isExpanded) {
         // Desenhar botão
         g2d.setColor(EXPAND_BUTTON_COLOR);
-        g2d.fillRect(x + 5, y + 5, EXPAND_BUTTON_SIZE, EXPAND_BUTTON_SIZE);
+        g2d.fillRect(button.x, button.y, button.width, button.height);
         g2d.setColor(BORDER_COLOR);
-        g2d.drawRect(x + 5, y + 5, EXPAND_BUTTON_SIZE, EXPAND_BUTTON_SIZE);
+        g2d.drawRect(button.x, button.y, button.width, button.height);
 
         // Desenhar símbolo + ou -
         g2d.setColor(TEXT_COLOR);
-        int centerX = x + 5 + EXPAND_BUTTON_SIZE / 2;
-        int centerY = y + 5 + EXPAND_BUTTON_SIZE / 2;
+        int centerX = button.x + button.width / 2;
+        int centerY = button.y + button.height / 2;
 
         // Linha horizontal sempre presente
         g2d.drawLine(centerX - 4, centerY, centerX + 4, centerY);
@@ -281,7 +398,10 @@ public class XsdVisualizerPanel extends JPanel {
         }
     }
 
-    private int drawComplexType(XsdComplexType complexType, int x, int y) {
+    private void drawComplexTypeBox(XsdDiagramLayout.Placement placement) {
+        XsdDiagramLayout.Node node = placement.getNode();
+        int x = placement.getX();
+        int y = placement.getY();
         // Desenhar caixa do tipo complexo
         g2d.setColor(COMPLEX_TYPE_COLOR);
         g2d.fillRect(x, y, ELEMENT_WIDTH, ELEMENT_HEIGHT);
@@ -292,82 +412,189 @@ public class XsdVisualizerPanel extends JPanel {
         g2d.setColor(TEXT_COLOR);
         Font boldFont = g2d.getFont().deriveFont(Font.BOLD);
         g2d.setFont(boldFont);
-
-        String name = truncateText("<<" + complexType.getName() + ">>", ELEMENT_WIDTH - 10);
-        g2d.drawString(name, x + 5, y + 20);
+        g2d.drawString(node.getNameLabel(), x + 5, y + 20);
 
         g2d.setFont(g2d.getFont().deriveFont(Font.PLAIN));
         g2d.drawString("ComplexType", x + 5, y + 40);
-
-        // Desenhar elementos do tipo complexo
-        int childX = x + HORIZONTAL_SPACING;
-        int childY = y;
-        int totalHeight = ELEMENT_HEIGHT;
-
-        for (XsdElement element : complexType.getElements()) {
-            // Linha de conexão
-            g2d.setColor(CONNECTION_COLOR);
-            g2d.drawLine(x + ELEMENT_WIDTH, y + ELEMENT_HEIGHT / 2, childX, childY + ELEMENT_HEIGHT / 2);
-
-            int elementHeight = drawElement(element, childX, childY, 1);
-            childY += elementHeight + VERTICAL_SPACING / 2;
-            totalHeight = Math.max(totalHeight, elementHeight);
-        }
-
-        return totalHeight;
     }
 
-    private String truncateText(String text, int maxWidth) {
+    private static String truncateText(FontMetrics metrics, String text, int maxWidth) {
         if (text == null) return "";
 
-        if (fontMetrics.stringWidth(text) <= maxWidth) {
+        if (metrics.stringWidth(text) <= maxWidth) {
             return text;
         }
 
         String truncated = text;
-        while (fontMetrics.stringWidth(truncated + "...") > maxWidth && truncated.length() > 1) {
+        while (metrics.stringWidth(truncated + "...") > maxWidth && truncated.length() > 1) {
             truncated = truncated.substring(0, truncated.length() - 1);
         }
         return truncated + "...";
     }
 
     private void handleMouseClick(int x, int y) {
-        // Verificar clique no botão de expandir/colapsar primeiro
-        for (ElementBox box : elementBoxes) {
-            if (box.element != null && !box.element.getChildren().isEmpty()) {
-                // Verificar se clicou no botão de expandir/colapsar
-                int buttonX = box.x + 5;
-                int buttonY = box.y + 5;
-
-                if (x >= buttonX && x <= buttonX + EXPAND_BUTTON_SIZE &&
-                        y >= buttonY && y <= buttonY + EXPAND_BUTTON_SIZE) {
-
-                    // Alternar estado de expansão apenas deste elemento
-                    boolean currentState = expandedState.getOrDefault(box.element, false);
-                    expandedState.put(box.element, !currentState);
-
-                    // Recalcular tamanho e redesenhar
-                    calculatePanelSize();
-                    repaint();
-                    return;
+        // Consulta pelo índice do layout: o botão de expandir/colapsar tem prioridade sobre a caixa
+        XsdDiagramLayout.Hit hit = layout.hitTest(x, y);
+        if (hit == null) {
+            return;
+        }
+
+        if (hit.getPart() == XsdDiagramLayout.Part.EXPAND_BUTTON) {
+            toggleExpanded(hit.getPlacement());
+            return;
+        }
+
+        // Clique normal no elemento ou num dos seus atributos: mostrar detalhes
+        showElementDetails(hit.getPlacement().getNode().getUse().getElement());
+    }
+
+    /**
+     * Alterna a expansão apenas deste elemento e refaz só a subárvore dele; os ancestrais são
+     * atualizados pelo layout e o restante do diagrama é reaproveitado. Redesenha só a região alterada.
+     */
+    private void toggleExpanded(XsdDiagramLayout.Placement placement) {
+        XsdElementUse use = placement.getNode().getUse();
+        expandedState.put(use, !isExpanded(use));
+
+        XsdDiagramLayout.Node previousNode = placement.getNode();
+        XsdDiagramLayout.Node node = layoutElement(use, typePathOf(placement), getFontMetrics(layout.getFont()));
+        XsdDiagramLayout previous = layout;
+        layout = layout.replace(placement, node);
+        updatePreferredSize();
+
+        int width = Math.max(previous.getWidth(), layout.getWidth());
+        int height = Math.max(previous.getHeight(), layout.getHeight());
+        if (previousNode.getHeight() == node.getHeight()) {
+            // Mesma altura: nada abaixo se desloca, só a subárvore do elemento muda
+            int bottom = Math.max(previousNode.getBottom(), node.getBottom());
+            markDirty(new Rectangle(placement.getX(), placement.getY(), width - placement.getX(), bottom));
+            return;
+        }
+
+        // Tudo abaixo do elemento se desloca, inclusive as linhas que os ancestrais ligam aos irmãos seguintes
+        markDirty(new Rectangle(0, placement.getY(), width, height - placement.getY()));
+        for (XsdDiagramLayout.Placement ancestor = placement.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            // Um pixel de folga em volta da linha pela suavização (antialiasing)
+            int top = ancestor.getY() + ELEMENT_HEIGHT / 2 - 1;
+            if (top < placement.getY()) {
+                markDirty(new Rectangle(ancestor.getX() + ELEMENT_WIDTH - 1, top,
+                        XsdDiagramLayout.HORIZONTAL_SPACING - ELEMENT_WIDTH + 2, placement.getY() - top));
+            }
+        }
+    }
+
+    /**
+     * Refaz o layout depois de mudar a expansão de vários elementos e redesenha só a partir
+     * do primeiro bloco de topo que mudou; os blocos acima dele ficam como estão.
+     */
+    private void updateExpansion() {
+        XsdDiagramLayout previous = layout;
+        updateLayout();
+        int top = layout.firstChangedY(previous);
+        if (top >= 0) {
+            int width = Math.max(previous.getWidth(), layout.getWidth());
+            int height = Math.max(previous.getHeight(), layout.getHeight());
+            markDirty(new Rectangle(0, top, width, height - top));
+        }
+    }
+
+    /**
+     * Acumula uma região a redesenhar. Regiões sobrepostas ou vizinhas são unidas, e todas as marcadas no mesmo
+     * quadro (cliques rápidos, por exemplo) saem num único ciclo de pintura.
+     */
+    private void markDirty(Rectangle region) {
+        Rectangle merged = new Rectangle(region);
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            for (Iterator<Rectangle> iterator = dirtyRegions.iterator(); iterator.hasNext(); ) {
+                Rectangle dirty = iterator.next();
+                // Só une quando o retângulo envolvente não cobre muito mais que as duas regiões juntas
+                if (area(merged.union(dirty)) <= area(merged) + area(dirty)) {
+                    merged.add(dirty);
+                    iterator.remove();
+                    grew = true;
                 }
             }
         }
+        dirtyRegions.add(merged);
+
+        // Muitas regiões espalhadas: um único retângulo envolvente sai mais barato
+        if (dirtyRegions.size() > MAX_DIRTY_REGIONS) {
+            Rectangle bounds = new Rectangle(dirtyRegions.get(0));
+            dirtyRegions.forEach(bounds::add);
+            dirtyRegions.clear();
+            dirtyRegions.add(bounds);
+        }
+
+        if (!repaintTimer.isRunning()) {
+            repaintTimer.start();
+        }
+    }
+
+    private static long area(Rectangle rectangle) {
+        return (long) rectangle.width * rectangle.height;
+    }
 
-        // Verificar clique normal no elemento para mostrar detalhes
-        for (ElementBox box : elementBoxes) {
-            if (box.contains(x, y)) {
-                showElementDetails(box.element);
-                break;
+    private void flushDirtyRegions() {
+        for (Rectangle region : dirtyRegions) {
+            repaint(region);
+        }
+        dirtyRegions.clear();
+    }
+
+    /**
+     * Tipos já expandidos no caminho até a caixa, como estavam quando o layout dela foi montado.
+     */
+    private Set<XsdComplexType> typePathOf(XsdDiagramLayout.Placement placement) {
+        Set<XsdComplexType> typePath = new HashSet<>();
+        for (XsdDiagramLayout.Placement ancestor = placement.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            XsdDiagramLayout.Node node = ancestor.getNode();
+            if (node.getKind() == XsdDiagramLayout.Kind.COMPLEX_TYPE) {
+                typePath.add(node.getComplexType());
+            } else if (!node.getUse().getElement().hasChildren()) {
+                typePath.add(node.getUse().getElement().resolveType(structure));
             }
         }
+        return typePath;
     }
 
+    /**
+     * A documentação sob demanda é lida do arquivo: o texto é montado fora da EDT e o diálogo
+     * aparece quando ele fica pronto.
+     */
     private void showElementDetails(XsdElement element) {
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() {
+                return elementDetails(element);
+            }
+
+            @Override
+            protected void done() {
+                if (!isShowing()) {
+                    return;
+                }
+                try {
+                    JOptionPane.showMessageDialog(XsdVisualizerPanel.this, get(),
+                            "Detalhes do Elemento", JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException | ExecutionException e) {
+                    JOptionPane.showMessageDialog(XsdVisualizerPanel.this, "Não foi possível ler os detalhes: " + e.getMessage(),
+                            "Detalhes do Elemento", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private static String elementDetails(XsdElement element) {
         StringBuilder details = new StringBuilder();
         details.append("Elemento: ").append(element.getName()).append("\n");
         details.append("Tipo: ").append(element.getType()).append("\n");
-        details.append("Ocorrências: ").append(element.getMinOccurs()).append("..").append(element.getMaxOccurs()).append("\n");
+        details.append("Ocorrências: ").append(element.getMinOccurs()).append("..").append(element.getMaxOccurs());
+        if (element.hasInvalidMaxOccurs()) {
+            details.append(" (maxOccurs inválido no XSD)");
+        }
+        details.append("\n");
 
         if (!element.getAttributes().isEmpty()) {
             details.append("\nAtributos:\n");
@@ -378,81 +605,199 @@ public class XsdVisualizerPanel extends JPanel {
 
 
 
-        if (element.getDocumentation() != null) {
-            details.append("\nDocumentação:\n").append(element.getDocumentation());
+        String documentation = element.getDocumentation();
+        if (documentation != null) {
+            details.append("\nDocumentação:\n").append(documentation);
         }
-
-        JOptionPane.showMessageDialog(this, details.toString(),
-                "Detalhes do Elemento", JOptionPane.INFORMATION_MESSAGE);
+        return details.toString();
     }
 
     // Métodos públicos para controle externo - CORRIGIDOS
     public void expandAll() {
         // Expandir todos os elementos recursivamente
-        for (XsdElement element : structure.getRootElements()) {
-            setElementExpandedRecursively(element, true);
-        }
-        calculatePanelSize();
-        repaint();
+        setAllExpanded(true);
+        updateExpansion();
     }
 
     public void collapseAll() {
         // Colapsar todos os elementos recursivamente
-        for (XsdElement element : structure.getRootElements()) {
-            setElementExpandedRecursively(element, false);
-        }
-        calculatePanelSize();
-        repaint();
+        setAllExpanded(false);
+        updateExpansion();
     }
 
     public void expandFirstLevel() {
         // Expandir apenas o primeiro nível
-        for (XsdElement element : structure.getRootElements()) {
-            expandedState.put(element, true);
-            // Colapsar todos os filhos
-            setElementExpandedRecursively(element.getChildren(), false);
-        }
-        calculatePanelSize();
-        repaint();
+        forEachTopLevelUse((use, typePath) -> {
+            expandedState.put(use, true);
+            // Colapsar todos os filhos, inclusive os vindos do tipo referenciado
+            XsdElement element = use.getElement();
+            List<XsdElement> children = contentChildren(element, typePath);
+            if (!children.isEmpty()) {
+                enterType(element, typePath);
+            }
+            for (int i = 0; i < children.size(); i++) {
+                setElementExpandedRecursively(use.child(children.get(i), i), typePath, false);
+            }
+        });
+        updateExpansion();
     }
 
     public void collapseFirstLevel() {
         // Colapsar apenas o primeiro nível
-        for (XsdElement element : structure.getRootElements()) {
-            expandedState.put(element, false);
+        forEachTopLevelUse((use, typePath) -> expandedState.put(use, false));
+        updateExpansion();
+    }
+
+    /**
+     * Aplica as declarações de topo refeitas pelo parse incremental.
+     * O estado de expansão é guardado pelo caminho de nomes, então vale também para os novos objetos.
+     * Só são refeitos os blocos trocados e os que exibem um tipo complexo trocado (pelo nome antigo ou
+     * novo); os demais são reaproveitados. Redesenha só esses blocos, ou tudo abaixo do primeiro
+     * bloco que mudou de altura.
+     */
+    public void applyReplacements(List<XsdIncrementalParser.Replacement> replacements) {
+        int blockCount = structure.getRootElements().size() + structure.getComplexTypes().size();
+        if (structure.isEmpty() || layout.getBlockCount() != blockCount) {
+            updateExpansion();
+            return;
         }
-        calculatePanelSize();
+
+        Set<Integer> changed = new TreeSet<>();
+        Set<String> typeNames = new HashSet<>();
+        for (XsdIncrementalParser.Replacement replacement : replacements) {
+            int index = blockIndexOf(replacement.getNewValue());
+            if (index < 0) {
+                updateExpansion();
+                return;
+            }
+            changed.add(index);
+            if (replacement.getNewValue() instanceof XsdComplexType) {
+                typeNames.add(replacement.getOldValue().getName());
+                typeNames.add(replacement.getNewValue().getName());
+            }
+        }
+        if (!typeNames.isEmpty()) {
+            for (int i = 0; i < blockCount; i++) {
+                if (!changed.contains(i) && layout.blockContains(i, node -> declaresType(node, typeNames))) {
+                    changed.add(i);
+                }
+            }
+        }
+
+        FontMetrics metrics = getFontMetrics(layout.getFont());
+        Map<Integer, XsdDiagramLayout.Node> blocks = new HashMap<>();
+        for (int index : changed) {
+            blocks.put(index, layoutBlock(index, metrics));
+        }
+        XsdDiagramLayout previous = layout;
+        layout = layout.replaceBlocks(blocks);
+        updatePreferredSize();
+
+        int width = Math.max(previous.getWidth(), layout.getWidth());
+        int height = Math.max(previous.getHeight(), layout.getHeight());
+        for (int index : changed) {
+            XsdDiagramLayout.Node previousBlock = previous.getBlock(index);
+            XsdDiagramLayout.Node block = layout.getBlock(index);
+            int top = layout.getBlockY(index);
+            if (previousBlock.getHeight() != block.getHeight()) {
+                // Os blocos seguintes se deslocam: redesenhar tudo abaixo deste
+                markDirty(new Rectangle(0, top, width, height - top));
+                return;
+            }
+            markDirty(new Rectangle(0, top, width, Math.max(previousBlock.getBottom(), block.getBottom())));
+        }
+    }
+
+    /**
+     * Tipos encontrados em segundo plano (ex.: pela busca no índice do projeto): resolve de novo os
+     * elementos exibidos, que passam a poder ser expandidos, e redesenha a partir da primeira linha alterada.
+     */
+    public void typesFound() {
+        structure.forgetResolvedTypes();
+        updateExpansion();
+    }
+
+    /**
+     * Troca a estrutura exibida após um parse completo, mantendo por nome o estado de expansão.
+     */
+    public void setStructure(XsdStructure newStructure) {
+        this.structure = newStructure;
+        updateLayout();
         repaint();
     }
 
-    private void setElementExpandedRecursively(XsdElement element, boolean expanded) {
-        expandedState.put(element, expanded);
-        for (XsdElement child : element.getChildren()) {
-            setElementExpandedRecursively(child, expanded);
-        }
+    /**
+     * Aplica o estado a todos os elementos exibíveis, percorrendo os mesmos blocos do layout.
+     */
+    private void setAllExpanded(boolean expanded) {
+        forEachTopLevelUse((use, typePath) -> setElementExpandedRecursively(use, typePath, expanded));
     }
 
-    private void setElementExpandedRecursively(List<XsdElement> elements, boolean expanded) {
-        for (XsdElement element : elements) {
-            setElementExpandedRecursively(element, expanded);
+    /**
+     * Visita o primeiro nível de cada bloco do layout (elementos raiz e elementos dos tipos complexos)
+     * com o caminho de tipos que o layout usa para ele. O caminho é novo a cada elemento.
+     */
+    private void forEachTopLevelUse(BiConsumer<XsdElementUse, Set<XsdComplexType>> action) {
+        List<XsdElement> rootElements = structure.getRootElements();
+        for (int i = 0; i < rootElements.size(); i++) {
+            action.accept(XsdElementUse.root(rootElements.get(i), i), new HashSet<>());
+        }
+        for (XsdComplexType complexType : structure.getComplexTypes()) {
+            List<XsdElement> typeElements = complexType.getElements();
+            for (int i = 0; i < typeElements.size(); i++) {
+                Set<XsdComplexType> typePath = new HashSet<>();
+                typePath.add(complexType);
+                action.accept(XsdElementUse.inType(complexType, typeElements.get(i), i), typePath);
+            }
         }
     }
 
-    // Classe auxiliar para detectar cliques
-    private static class ElementBox {
-        final int x, y, width, height;
-        final XsdElement element;
+    /**
+     * Percorre os filhos exibíveis (inline ou do tipo referenciado) com a mesma proteção contra
+     * tipos recursivos do layout, usando pilha explícita em vez de recursão.
+     * @param typePath Tipos já expandidos no caminho até o elemento; volta ao estado original no fim
+     */
+    private void setElementExpandedRecursively(XsdElementUse use, Set<XsdComplexType> typePath, boolean expanded) {
+        Deque<UseFrame> stack = new ArrayDeque<>();
+        stack.push(openExpansionFrame(use, typePath, expanded));
+        while (!stack.isEmpty()) {
+            UseFrame frame = stack.peek();
+            if (frame.next < frame.children.size()) {
+                int index = frame.next++;
+                stack.push(openExpansionFrame(frame.use.child(frame.children.get(index), index), typePath, expanded));
+                continue;
+            }
+            stack.pop();
+            if (!frame.children.isEmpty()) {
+                typePath.remove(frame.enteredType);
+            }
+        }
+    }
 
-        ElementBox(int x, int y, int width, int height, XsdElement element) {
-            this.x = x;
-            this.y = y;
-            this.width = width;
-            this.height = height;
-            this.element = element;
+    private UseFrame openExpansionFrame(XsdElementUse use, Set<XsdComplexType> typePath, boolean expanded) {
+        expandedState.put(use, expanded);
+        UseFrame frame = new UseFrame(use);
+        frame.children = contentChildren(use.getElement(), typePath);
+        if (!frame.children.isEmpty()) {
+            frame.enteredType = enterType(use.getElement(), typePath);
         }
+        return frame;
+    }
 
-        boolean contains(int px, int py) {
-            return px >= x && px <= x + width && py >= y && py <= y + height;
+    /**
+     * Ocorrência aberta numa travessia da árvore exibida: filhos visíveis, próximo filho
+     * e o layout dos filhos já fechados.
+     */
+    private static class UseFrame {
+        final XsdElementUse use;
+        final List<XsdDiagramLayout.Node> laidOut = new ArrayList<>();
+        List<XsdElement> children;
+        XsdComplexType enteredType;
+        boolean expandable;
+        int next;
+
+        UseFrame(XsdElementUse use) {
+            this.use = use;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package br.com.clmDev.xsd_view;
+
+import br.com.clmDev.xsd_view.model.XsdAttribute;
+import br.com.clmDev.xsd_view.model.XsdElement;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Schemas com milhares de níveis de xs:element aninhados e execução numa thread de pilha pequena,
+ * para que qualquer recursão por nível estoure a pilha nos testes.
+ */
+public final class XsdDeepSchemas {
+    public static final int LEVELS = 10_000;
+
+    private static final long STACK_SIZE = 512 * 1024;
+
+    private XsdDeepSchemas() {
+    }
+
+    /**
+     * Cada nível tem documentação, um tipo complexo anônimo com o próximo nível e um atributo.
+     * @param levels Quantidade de níveis acima do elemento folha
+     * @return Texto do XSD
+     */
+    public static String generate(int levels) {
+        StringBuilder xsd = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xsd.append("<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n");
+        for (int i = 0; i < levels; i++) {
+            xsd.append("<xs:element name=\"e").append(i).append("\">")
+                    .append("<xs:annotation><xs:documentation>Nível ").append(i).append("</xs:documentation></xs:annotation>")
+                    .append("<xs:complexType><xs:sequence>\n");
+        }
+        xsd.append("<xs:element name=\"folha\" type=\"xs:string\"/>\n");
+        for (int i = 0; i < levels; i++) {
+            xsd.append("</xs:sequence><xs:attribute name=\"a\" type=\"xs:string\"/></xs:complexType></xs:element>\n");
+        }
+        return xsd.append("</xs:schema>\n").toString();
+    }
+
+    /**
+     * @return Quantidade de elementos da cadeia, seguindo o primeiro filho de cada nível
+     */
+    public static int chainLength(XsdElement root) {
+        int length = 0;
+        for (XsdElement element = root; element != null;
+             element = element.getChildren().isEmpty() ? null : element.getChildren().get(0)) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Compara o conteúdo das duas árvores, com a documentação decodificada: motores diferentes guardam
+     * a documentação de formas diferentes, então XsdCanonicalizer.structurallyEqual não serve entre eles.
+     * Percorre com pilha explícita para não depender da pilha da thread.
+     * @throws AssertionError na primeira diferença
+     */
+    public static void assertSameContent(XsdElement expected, XsdElement actual) {
+        Deque<XsdElement[]> pending = new ArrayDeque<>();
+        pending.push(new XsdElement[]{expected, actual});
+        while (!pending.isEmpty()) {
+            XsdElement[] pair = pending.pop();
+            XsdElement a = pair[0];
+            XsdElement b = pair[1];
+            check(a.getName(), b.getName(), "nome", a);
+            check(a.getType(), b.getType(), "tipo", a);
+            check(a.getOccurrenceString(), b.getOccurrenceString(), "ocorrências", a);
+            check(a.getDocumentation(), b.getDocumentation(), "documentação", a);
+
+            List<XsdAttribute> attributes = a.getAttributes();
+            check(attributes.size(), b.getAttributes().size(), "quantidade de atributos", a);
+            for (int i = 0; i < attributes.size(); i++) {
+                check(attributes.get(i).getName(), b.getAttributes().get(i).getName(), "atributo", a);
+                check(attributes.get(i).getType(), b.getAttributes().get(i).getType(), "tipo do atributo", a);
+            }
+
+            List<XsdElement> children = a.getChildren();
+            check(children.size(), b.getChildren().size(), "quantidade de filhos", a);
+            for (int i = 0; i < children.size(); i++) {
+                pending.push(new XsdElement[]{children.get(i), b.getChildren().get(i)});
+            }
+        }
+    }
+
+    private static void check(Object expected, Object actual, String what, XsdElement element) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(String.format("%s diferente em %s: esperado <%s>, obtido <%s>",
+                    what, element.getName(), expected, actual));
+        }
+    }
+
+    /**
+     * Executa a tarefa numa thread com pilha de 512 KB e repassa o resultado ou o erro.
+     */
+    public static <T> T onSmallStack(Callable<T> task) throws Exception {
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable runnable = () -> {
+            try {
+                result.set(task.call());
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        };
+        Thread thread = new Thread(null, runnable, "deep", STACK_SIZE);
+        thread.start();
+        thread.join();
+
+        Throwable error = failure.get();
+        if (error instanceof StackOverflowError) {
+            throw new AssertionError("Estouro de pilha em schema profundo", error);
+        }
+        if (error instanceof Exception) {
+            throw (Exception) error;
+        }
+        if (error != null) {
+            throw (Error) error;
+        }
+        return result.get();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+package br.com.clmDev.xsd_view.model;
+
+import br.com.clmDev.xsd_view.parser.XsdParseLimits;
+import br.com.clmDev.xsd_view.parser.XsdParser;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Identidade das ocorrências usada como chave do estado de expansão do painel.
+ */
+public class XsdElementUseTest {
+    private static final String SCHEMA = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n" +
+            "<xs:element name=\"pedido\"><xs:complexType><xs:choice>\n" +
+            "  <xs:element name=\"item\" type=\"TItem\"/>\n" +
+            "  <xs:element name=\"item\" type=\"TItem\" maxOccurs=\"10\"/>\n" +
+            "</xs:choice></xs:complexType></xs:element>\n" +
+            "</xs:schema>";
+
+    private static XsdElementUse root() {
+        XsdStructure structure = new XsdParser(XsdParser.Engine.STAX, XsdParseLimits.UNLIMITED).parseXsd(SCHEMA, null);
+        return XsdElementUse.root(structure.getRootElements().get(0), 0);
+    }
+
+    @Test
+    public void sameNamedSiblingsAreDistinctUses() {
+        XsdElementUse pedido = root();
+        List<XsdElement> items = pedido.getElement().getChildren();
+        assertEquals(2, items.size());
+        assertEquals(items.get(0).getName(), items.get(1).getName());
+
+        assertNotEquals(pedido.child(items.get(0), 0), pedido.child(items.get(1), 1));
+    }
+
+    @Test
+    public void samePathInAnotherParseIsTheSameUse() {
+        XsdElementUse first = root();
+        XsdElementUse second = root();
+        XsdElementUse firstItem = first.child(first.getElement().getChildren().get(1), 1);
+        XsdElementUse secondItem = second.child(second.getElement().getChildren().get(1), 1);
+
+        assertEquals(firstItem, secondItem);
+        assertEquals(firstItem.hashCode(), secondItem.hashCode());
+        assertEquals("pedido[0]/item[1]", firstItem.toString());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdElement;
+import br.com.clmDev.xsd_view.model.XsdStructure;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Canonicalização de nós documentados: a documentação sob demanda aponta posições diferentes
+ * do texto para cada cópia, e só o conteúdo deve decidir se duas cópias são iguais.
+ */
+public class XsdCanonicalizerTest {
+    private static final String SCHEMA =
+            "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n" +
+            "  <xs:element name=\"pedido\">\n" +
+            "    <xs:complexType>\n" +
+            "      <xs:sequence>\n" +
+            group("a", "Valor do item") +
+            group("b", "Valor do item") +
+            group("c", "Valor &amp; desconto") +
+            "      </xs:sequence>\n" +
+            "    </xs:complexType>\n" +
+            "  </xs:element>\n" +
+            "</xs:schema>\n";
+
+    private static String group(String name, String documentation) {
+        return "<xs:element name=\"" + name + "\"><xs:complexType><xs:sequence>\n" +
+                "  <xs:element name=\"valor\" type=\"xs:decimal\">\n" +
+                "    <xs:annotation><xs:documentation>" + documentation + "</xs:documentation></xs:annotation>\n" +
+                "  </xs:element>\n" +
+                "</xs:sequence></xs:complexType></xs:element>\n";
+    }
+
+    @Test
+    public void documentedDuplicatesAreSharedByContent() throws Exception {
+        XsdStructure structure = new XsdParser(XsdParser.Engine.STAX, XsdParseLimits.UNLIMITED).parseXsd(SCHEMA, null);
+        List<XsdElement> groups = structure.getRootElements().get(0).getChildren();
+        XsdElement first = groups.get(0).getChildren().get(0);
+        XsdElement second = groups.get(1).getChildren().get(0);
+        assertTrue(first.getDocumentationRef().isLazy());
+        assertNotSame(first, second);
+
+        XsdCanonicalizer.canonicalize(structure);
+
+        assertSame(groups.get(0).getChildren().get(0), groups.get(1).getChildren().get(0));
+        assertEquals("Valor do item", groups.get(1).getChildren().get(0).getDocumentation());
+    }
+
+    @Test
+    public void differentDocumentationIsNotShared() throws Exception {
+        XsdStructure structure = new XsdParser(XsdParser.Engine.STAX, XsdParseLimits.UNLIMITED).parseXsd(SCHEMA, null);
+        List<XsdElement> groups = structure.getRootElements().get(0).getChildren();
+
+        XsdCanonicalizer.canonicalize(structure);
+
+        XsdElement other = groups.get(2).getChildren().get(0);
+        assertNotSame(groups.get(0).getChildren().get(0), other);
+        assertEquals("Valor & desconto", other.getDocumentation());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.XsdDeepSchemas;
+import br.com.clmDev.xsd_view.model.XsdElement;
+import br.com.clmDev.xsd_view.model.XsdStructure;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static br.com.clmDev.xsd_view.XsdDeepSchemas.LEVELS;
+import static br.com.clmDev.xsd_view.XsdDeepSchemas.onSmallStack;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Parse, serialização e canonicalização de um schema com {@link XsdDeepSchemas#LEVELS} níveis,
+ * todos numa thread de pilha pequena: nenhum deles pode recorrer por nível.
+ */
+public class XsdDeepSchemaTest {
+    private static String text;
+    private static XsdStructure dom;
+
+    @BeforeClass
+    public static void parseWithDom() throws Exception {
+        text = XsdDeepSchemas.generate(LEVELS);
+        dom = onSmallStack(() -> new XsdParser(XsdParser.Engine.DOM, XsdParseLimits.UNLIMITED).parseXsd(text, null));
+        assertFalse(dom.isTruncated());
+        assertEquals(1, dom.getRootElements().size());
+        assertEquals(LEVELS + 1, XsdDeepSchemas.chainLength(domRoot()));
+    }
+
+    private static XsdElement domRoot() {
+        return dom.getRootElements().get(0);
+    }
+
+    @Test
+    public void staxFromBytesMatchesDom() throws Exception {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        XsdStructure stax = onSmallStack(() -> new XsdStaxParser(null, XsdParseLimits.UNLIMITED)
+                .parse(new ByteArrayInputStream(bytes), bytes.length));
+
+        assertFalse(stax.isTruncated());
+        XsdElement root = stax.getRootElements().get(0);
+        onSmallStack(() -> {
+            XsdDeepSchemas.assertSameContent(domRoot(), root);
+            assertTrue(XsdCanonicalizer.structurallyEqual(domRoot(), root));
+            assertEquals(XsdCanonicalizer.structuralHash(domRoot()), XsdCanonicalizer.structuralHash(root));
+            return null;
+        });
+    }
+
+    @Test
+    public void staxFromTextMatchesDom() throws Exception {
+        XsdStructure stax = onSmallStack(() ->
+                new XsdParser(XsdParser.Engine.STAX, XsdParseLimits.UNLIMITED).parseXsd(text, null));
+
+        assertFalse(stax.isTruncated());
+        // Documentação lida sob demanda do texto: compara-se o conteúdo decodificado
+        onSmallStack(() -> {
+            XsdDeepSchemas.assertSameContent(domRoot(), stax.getRootElements().get(0));
+            return null;
+        });
+    }
+
+    @Test
+    public void serializerRoundTrip() throws Exception {
+        XsdStructure copy = onSmallStack(() -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            XsdStructureSerializer.write(dom, new DataOutputStream(bytes));
+            return XsdStructureSerializer.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), null);
+        });
+
+        XsdElement root = copy.getRootElements().get(0);
+        onSmallStack(() -> {
+            XsdDeepSchemas.assertSameContent(domRoot(), root);
+            assertTrue(XsdCanonicalizer.structurallyEqual(domRoot(), root));
+            return null;
+        });
+    }
+
+    @Test
+    public void canonicalizeKeepsContent() throws Exception {
+        XsdStructure structure = onSmallStack(() ->
+                new XsdParser(XsdParser.Engine.DOM, XsdParseLimits.UNLIMITED).parseXsd(text, null));
+
+        XsdCanonicalizer.Result result = onSmallStack(() -> XsdCanonicalizer.canonicalize(structure));
+
+        // O atributo "a" se repete em todos os níveis e passa a ser compartilhado
+        assertTrue(result.getNodesSaved() >= LEVELS - 1);
+        XsdElement root = structure.getRootElements().get(0);
+        onSmallStack(() -> {
+            XsdDeepSchemas.assertSameContent(domRoot(), root);
+            assertTrue(XsdCanonicalizer.structurallyEqual(domRoot(), root));
+            return null;
+        });
+    }
+}
\ No newline at end of file
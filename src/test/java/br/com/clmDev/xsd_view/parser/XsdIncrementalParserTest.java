@@ -0,0 +1,125 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdComplexType;
+import br.com.clmDev.xsd_view.model.XsdElement;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Detecção da declaração de topo atingida por cada edição e decisão entre parse do trecho e parse completo.
+ */
+public class XsdIncrementalParserTest {
+    private static final XsdParser PARSER = new XsdParser(XsdParser.Engine.STAX, XsdParseLimits.UNLIMITED);
+    private static final String SCHEMA =
+            "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" xmlns:t=\"urn:teste\">\n" +
+            "  <xs:element name=\"pedido\" type=\"t:TPedido\"/>\n" +
+            "  <xs:complexType name=\"TPedido\">\n" +
+            "    <xs:sequence>\n" +
+            "      <xs:element name=\"item\" type=\"xs:string\"/>\n" +
+            "    </xs:sequence>\n" +
+            "  </xs:complexType>\n" +
+            "  <xs:element name=\"cliente\"/>\n" +
+            "</xs:schema>\n";
+
+    private StringBuilder text;
+    private XsdIncrementalParser incremental;
+
+    @Before
+    public void parse() {
+        text = new StringBuilder(SCHEMA);
+        incremental = XsdIncrementalParser.parseFull(PARSER, SCHEMA, null);
+        assertFalse(incremental.needsFullReparse());
+    }
+
+    private void edit(String target, String replacement) {
+        int offset = text.indexOf(target);
+        text.replace(offset, offset + target.length(), replacement);
+        incremental.documentChanged(offset, target.length(), replacement.length());
+    }
+
+    @Test
+    public void editInsideDeclarationReplacesOnlyIt() {
+        XsdElement cliente = incremental.getStructure().getRootElements().get(1);
+
+        edit("name=\"item\"", "name=\"produto\"");
+        List<XsdIncrementalParser.Replacement> replacements = incremental.reparseDirty(PARSER, text.toString());
+
+        assertEquals(1, replacements.size());
+        XsdComplexType type = incremental.getStructure().getComplexTypes().get(0);
+        assertSame(type, replacements.get(0).getNewValue());
+        assertEquals("TPedido", replacements.get(0).getOldValue().getName());
+        assertEquals("produto", type.getElements().get(0).getName());
+        assertSame(cliente, incremental.getStructure().getRootElements().get(1));
+    }
+
+    @Test
+    public void editsShiftTheFollowingDeclarations() {
+        edit("name=\"pedido\"", "name=\"pedidoCompleto\"");
+        edit("name=\"cliente\"", "name=\"comprador\"");
+        List<XsdIncrementalParser.Replacement> replacements = incremental.reparseDirty(PARSER, text.toString());
+
+        assertEquals(2, replacements.size());
+        assertEquals("pedidoCompleto", incremental.getStructure().getRootElements().get(0).getName());
+        assertEquals("comprador", incremental.getStructure().getRootElements().get(1).getName());
+        assertSame(incremental.getStructure().getType("TPedido"),
+                incremental.getStructure().getRootElements().get(0).resolveType(incremental.getStructure()));
+    }
+
+    @Test
+    public void editAcrossDeclarationsNeedsFullReparse() {
+        edit("\"/>\n  <xs:complexType", "\"/><xs:complexType");
+
+        assertTrue(incremental.needsFullReparse());
+        assertNull(incremental.reparseDirty(PARSER, text.toString()));
+    }
+
+    @Test
+    public void editOfTheSchemaTagNeedsFullReparse() {
+        edit("urn:teste", "urn:outro");
+
+        assertNull(incremental.reparseDirty(PARSER, text.toString()));
+    }
+
+    @Test
+    public void newTopLevelDeclarationNeedsFullReparse() {
+        edit("<xs:element name=\"cliente\"/>", "<xs:element name=\"cliente\"/><xs:element name=\"loja\"/>");
+
+        assertNull(incremental.reparseDirty(PARSER, text.toString()));
+    }
+
+    @Test
+    public void malformedSnippetKeepsTheDeclaration() {
+        XsdElement pedido = incremental.getStructure().getRootElements().get(0);
+
+        edit("type=\"t:TPedido\"/>", "type=\"t:TPedido\">");
+        List<XsdIncrementalParser.Replacement> replacements = incremental.reparseDirty(PARSER, text.toString());
+
+        assertTrue(replacements.isEmpty());
+        assertSame(pedido, incremental.getStructure().getRootElements().get(0));
+        assertFalse(incremental.needsFullReparse());
+    }
+
+    @Test
+    public void truncatedSnippetNeedsFullReparse() {
+        // Cada declaração cabe no limite, mas a edição faz o tipo passar dele
+        XsdParser limited = new XsdParser(XsdParser.Engine.STAX, new XsdParseLimits(Long.MAX_VALUE, Integer.MAX_VALUE, 4, Long.MAX_VALUE));
+        incremental = XsdIncrementalParser.parseFull(limited, SCHEMA, null);
+        assertFalse(incremental.needsFullReparse());
+
+        edit("<xs:element name=\"item\" type=\"xs:string\"/>",
+                "<xs:element name=\"a\"/><xs:element name=\"b\"/><xs:element name=\"c\"/><xs:element name=\"d\"/>");
+
+        assertNull(incremental.reparseDirty(limited, text.toString()));
+        XsdIncrementalParser reparsed = XsdIncrementalParser.parseFull(limited, text.toString(), null);
+        assertTrue(reparsed.getStructure().isTruncated());
+        assertTrue(reparsed.needsFullReparse());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdElement;
+import br.com.clmDev.xsd_view.model.XsdStructure;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Ao atingir um limite o parse entrega a estrutura parcial marcada como truncada, em vez de falhar.
+ */
+public class XsdParseLimitsTest {
+    private static final String SCHEMA =
+            "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n" +
+            "  <xs:element name=\"a\"><xs:complexType><xs:sequence>\n" +
+            "    <xs:element name=\"b\"><xs:complexType><xs:sequence>\n" +
+            "      <xs:element name=\"c\"/>\n" +
+            "    </xs:sequence></xs:complexType></xs:element>\n" +
+            "  </xs:sequence></xs:complexType></xs:element>\n" +
+            "  <xs:element name=\"d\"/>\n" +
+            "  <xs:element name=\"e\"/>\n" +
+            "</xs:schema>\n";
+
+    private static XsdStructure parse(XsdParseLimits limits) {
+        return new XsdParser(XsdParser.Engine.STAX, limits).parseXsd(SCHEMA, null);
+    }
+
+    @Test
+    public void withinLimitsNothingIsTruncated() {
+        XsdStructure structure = parse(new XsdParseLimits(SCHEMA.length(), 3, 5, Long.MAX_VALUE));
+
+        assertFalse(structure.isTruncated());
+        assertEquals(3, structure.getRootElements().size());
+    }
+
+    @Test
+    public void nodeLimitKeepsWhatWasRead() {
+        XsdStructure structure = parse(new XsdParseLimits(Long.MAX_VALUE, Integer.MAX_VALUE, 4, Long.MAX_VALUE));
+
+        assertTrue(structure.isTruncated());
+        assertEquals(2, structure.getRootElements().size());
+        assertEquals("c", structure.getRootElements().get(0).getChildren().get(0).getChildren().get(0).getName());
+    }
+
+    @Test
+    public void depthLimitStopsDescending() {
+        XsdStructure structure = parse(new XsdParseLimits(Long.MAX_VALUE, 1, Integer.MAX_VALUE, Long.MAX_VALUE));
+
+        assertTrue(structure.isTruncated());
+        assertEquals(1, structure.getRootElements().size());
+        XsdElement b = structure.getRootElements().get(0).getChildren().get(0);
+        assertEquals("b", b.getName());
+        assertTrue(b.getChildren().isEmpty());
+    }
+
+    @Test
+    public void byteLimitStopsReading() {
+        // O limite é verificado a cada bloco lido: o schema precisa ser maior que o buffer do leitor
+        StringBuilder schema = new StringBuilder("<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n");
+        for (int i = 0; i < 5000; i++) {
+            schema.append("  <xs:element name=\"e").append(i).append("\" type=\"xs:string\"/>\n");
+        }
+        schema.append("</xs:schema>\n");
+        XsdParseLimits limits = new XsdParseLimits(schema.length() / 2, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+        XsdStructure structure = new XsdParser(XsdParser.Engine.STAX, limits).parseXsd(schema, null);
+
+        assertTrue(structure.isTruncated());
+        int read = structure.getRootElements().size();
+        assertTrue(read > 0 && read < 5000);
+        assertEquals("e" + (read - 1), structure.getRootElements().get(read - 1).getName());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdAttribute;
+import br.com.clmDev.xsd_view.model.XsdElement;
+import br.com.clmDev.xsd_view.model.XsdStructure;
+import br.com.clmDev.xsd_view.model.XsdTextSource;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Serialização de nós documentados: a documentação sob demanda é gravada como posição e lida de novo
+ * da origem do texto; a já carregada é gravada como texto.
+ */
+public class XsdStructureSerializerTest {
+    private static final String SCHEMA =
+            "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n" +
+            "  <xs:element name=\"nota\">\n" +
+            "    <xs:annotation><xs:documentation>Nota fiscal &amp; cupom ✓</xs:documentation></xs:annotation>\n" +
+            "    <xs:complexType>\n" +
+            "      <xs:sequence>\n" +
+            "        <xs:element name=\"valor\" type=\"xs:decimal\"/>\n" +
+            "      </xs:sequence>\n" +
+            "      <xs:attribute name=\"versao\">\n" +
+            "        <xs:annotation><xs:documentation><![CDATA[Versão <4.00>]]></xs:documentation></xs:annotation>\n" +
+            "      </xs:attribute>\n" +
+            "    </xs:complexType>\n" +
+            "  </xs:element>\n" +
+            "</xs:schema>\n";
+
+    private static XsdStructure roundTrip(XsdStructure structure, XsdTextSource documentationSource) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        XsdStructureSerializer.write(structure, new DataOutputStream(bytes));
+        return XsdStructureSerializer.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                documentationSource);
+    }
+
+    @Test
+    public void lazyDocumentationIsReadAgainFromTheText() throws Exception {
+        XsdStructure structure = new XsdParser(XsdParser.Engine.STAX, XsdParseLimits.UNLIMITED).parseXsd(SCHEMA, null);
+        assertTrue(structure.getRootElements().get(0).getDocumentationRef().isLazy());
+
+        XsdStructure copy = roundTrip(structure, XsdCachingTextSource.of(SCHEMA));
+
+        XsdElement nota = copy.getRootElements().get(0);
+        XsdAttribute versao = nota.getAttributes().get(0);
+        assertTrue(nota.getDocumentationRef().isLazy());
+        assertEquals("Nota fiscal & cupom ✓", nota.getDocumentation());
+        assertEquals("Versão <4.00>", versao.getDocumentation());
+        assertNull(nota.getChildren().get(0).getDocumentation());
+    }
+
+    @Test
+    public void loadedDocumentationIsWrittenAsText() throws Exception {
+        XsdStructure structure = new XsdParser(XsdParser.Engine.DOM, XsdParseLimits.UNLIMITED).parseXsd(SCHEMA, null);
+        assertFalse(structure.getRootElements().get(0).getDocumentationRef().isLazy());
+
+        XsdStructure copy = roundTrip(structure, null);
+
+        XsdElement nota = copy.getRootElements().get(0);
+        assertFalse(nota.getDocumentationRef().isLazy());
+        assertEquals("Nota fiscal & cupom ✓", nota.getDocumentation());
+        assertEquals("Versão <4.00>", nota.getAttributes().get(0).getDocumentation());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+package br.com.clmDev.xsd_view.parser;
+
+import br.com.clmDev.xsd_view.model.XsdSchemaReference;
+import br.com.clmDev.xsd_view.model.XsdSchemaSummary;
+import br.com.clmDev.xsd_view.model.XsdStructure;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Varredura léxica dos filhos diretos do schema: os trechos precisam cobrir cada declaração inteira,
+ * sem se deixar enganar por comentários, CDATA ou '>' dentro de atributos, e o resumo precisa
+ * concordar com o parse completo.
+ */
+public class XsdTopLevelScannerTest {
+    private static final String SCHEMA =
+            "<?xml version=\"1.0\"?>\n" +
+            "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:teste\">\n" +
+            "  <xs:include schemaLocation=\"comum.xsd\"/>\n" +
+            "  <!-- <xs:element name=\"comentado\"/> -->\n" +
+            "  <xs:element name=\"pedido\" type=\"TPedido\">\n" +
+            "    <xs:annotation><xs:documentation><![CDATA[</xs:element> a > b]]></xs:documentation></xs:annotation>\n" +
+            "  </xs:element>\n" +
+            "  <xs:complexType name=\"TPedido\">\n" +
+            "    <xs:sequence>\n" +
+            "      <xs:element name=\"item\" type=\"xs:string\" fixed=\"a>b\"/>\n" +
+            "    </xs:sequence>\n" +
+            "    <xs:attribute name=\"versao\"/>\n" +
+            "  </xs:complexType>\n" +
+            "  <xs:simpleType name=\"TCodigo\"><xs:restriction base=\"xs:string\"/></xs:simpleType>\n" +
+            "  <xs:element name=\"vazio\"/>\n" +
+            "</xs:schema>\n";
+
+    @Test
+    public void slotsCoverEachTopLevelDeclaration() {
+        XsdTopLevelScanner.Result result = XsdTopLevelScanner.scan(SCHEMA);
+
+        List<XsdTopLevelScanner.Slot> slots = result.slots;
+        assertEquals(5, slots.size());
+        assertEquals(Arrays.asList(XsdTopLevelScanner.Kind.OTHER, XsdTopLevelScanner.Kind.ELEMENT,
+                        XsdTopLevelScanner.Kind.COMPLEX_TYPE, XsdTopLevelScanner.Kind.OTHER, XsdTopLevelScanner.Kind.ELEMENT),
+                Arrays.asList(slots.get(0).kind, slots.get(1).kind, slots.get(2).kind, slots.get(3).kind, slots.get(4).kind));
+        assertEquals("pedido", slots.get(1).name);
+        assertEquals("TPedido", slots.get(2).name);
+
+        // Trechos contíguos: cada um começa onde o anterior termina e inclui o comentário que o precede
+        for (int i = 1; i < slots.size(); i++) {
+            assertEquals(slots.get(i - 1).end, slots.get(i).start);
+        }
+        String element = SCHEMA.substring(slots.get(1).start, slots.get(1).end);
+        assertTrue(element.contains("<!-- <xs:element name=\"comentado\"/> -->"));
+        assertTrue(element.endsWith("]]></xs:documentation></xs:annotation>\n  </xs:element>"));
+        assertTrue(SCHEMA.substring(slots.get(2).start, slots.get(2).end).endsWith("</xs:complexType>"));
+        assertTrue(SCHEMA.substring(slots.get(4).start, slots.get(4).end).endsWith("<xs:element name=\"vazio\"/>"));
+        assertTrue(result.rootStartTag.startsWith("<xs:schema ") && result.rootStartTag.endsWith(">"));
+        assertEquals("</xs:schema>", result.rootEndTag);
+    }
+
+    @Test
+    public void summaryMatchesParse() throws Exception {
+        XsdSchemaSummary summary = XsdTopLevelScanner.summarize(SCHEMA);
+        XsdStructure structure = new XsdParser(XsdParser.Engine.STAX, XsdParseLimits.UNLIMITED).parseXsd(SCHEMA, null);
+
+        assertEquals("urn:teste", summary.getTargetNamespace());
+        assertEquals(structure.getTargetNamespace(), summary.getTargetNamespace());
+        assertEquals(Arrays.asList("pedido", "vazio"), summary.getElementNames());
+        assertEquals(Arrays.asList("TPedido"), summary.getComplexTypeNames());
+        assertEquals(1, summary.getReferences().size());
+        XsdSchemaReference reference = summary.getReferences().get(0);
+        assertEquals(XsdSchemaReference.Kind.INCLUDE, reference.getKind());
+        assertEquals("comum.xsd", reference.getSchemaLocation());
+        assertEquals(structure.getSchemaReferences().get(0).getSchemaLocation(), reference.getSchemaLocation());
+    }
+
+    @Test
+    public void unfinishedDocumentIsNotScanned() {
+        String unfinished = SCHEMA.substring(0, SCHEMA.indexOf("</xs:complexType>"));
+
+        assertNull(XsdTopLevelScanner.scan(unfinished));
+        assertNull(XsdTopLevelScanner.summarize(unfinished));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+package br.com.clmDev.xsd_view.ui;
+
+import br.com.clmDev.xsd_view.XsdDeepSchemas;
+import br.com.clmDev.xsd_view.model.XsdElement;
+import br.com.clmDev.xsd_view.model.XsdElementUse;
+import br.com.clmDev.xsd_view.model.XsdStructure;
+import br.com.clmDev.xsd_view.parser.XsdParseLimits;
+import br.com.clmDev.xsd_view.parser.XsdParser;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static br.com.clmDev.xsd_view.XsdDeepSchemas.LEVELS;
+import static br.com.clmDev.xsd_view.XsdDeepSchemas.onSmallStack;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Layout, pintura e hit test do diagrama de um schema com {@link XsdDeepSchemas#LEVELS} níveis
+ * totalmente expandido, numa thread de pilha pequena.
+ */
+public class XsdDiagramLayoutDeepTest {
+    private static final int EXPECTED_WIDTH =
+            (LEVELS + 1) * XsdDiagramLayout.HORIZONTAL_SPACING + 2 * XsdDiagramLayout.MARGIN;
+
+    private static XsdStructure structure;
+
+    @BeforeClass
+    public static void parse() throws Exception {
+        String text = XsdDeepSchemas.generate(LEVELS);
+        structure = onSmallStack(() ->
+                new XsdParser(XsdParser.Engine.STAX, XsdParseLimits.UNLIMITED).parseXsd(text, null));
+    }
+
+    @Test
+    public void panelExpandsAndPaintsAllLevels() throws Exception {
+        Dimension size = onSmallStack(() -> {
+            XsdVisualizerPanel panel = new XsdVisualizerPanel(structure);
+            panel.expandAll();
+            Dimension preferred = panel.getPreferredSize();
+
+            // Só a área do elemento mais profundo
+            panel.setSize(preferred);
+            BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = image.createGraphics();
+            graphics.translate(-(EXPECTED_WIDTH - 200), 0);
+            graphics.setClip(EXPECTED_WIDTH - 200, 0, 200, 200);
+            panel.paint(graphics);
+            graphics.dispose();
+            return preferred;
+        });
+
+        assertEquals(EXPECTED_WIDTH, size.width);
+    }
+
+    @Test
+    public void layoutOfTheChainFindsTheDeepestElement() throws Exception {
+        // Ocorrências da raiz até a folha
+        List<XsdElementUse> uses = new ArrayList<>();
+        XsdElementUse use = XsdElementUse.root(structure.getRootElements().get(0), 0);
+        while (true) {
+            uses.add(use);
+            List<XsdElement> children = use.getElement().getChildren();
+            if (children.isEmpty()) {
+                break;
+            }
+            use = use.child(children.get(0), 0);
+        }
+        assertEquals(LEVELS + 1, uses.size());
+
+        XsdDiagramLayout.Hit hit = onSmallStack(() -> {
+            XsdDiagramLayout.Node node = null;
+            for (int i = uses.size() - 1; i >= 0; i--) {
+                XsdElementUse current = uses.get(i);
+                List<XsdDiagramLayout.Node> children = node == null
+                        ? Collections.emptyList() : Collections.singletonList(node);
+                node = XsdDiagramLayout.Node.element(current, current.getElement().getName(), "",
+                        node != null, node != null, children);
+            }
+            XsdDiagramLayout layout = new XsdDiagramLayout(new Font(Font.DIALOG, Font.PLAIN, 12),
+                    Collections.singletonList(node));
+            assertEquals(EXPECTED_WIDTH, layout.getWidth());
+
+            int[] boxes = new int[1];
+            layout.query(new Rectangle(0, 0, layout.getWidth(), layout.getHeight()), placement -> boxes[0]++);
+            assertEquals(LEVELS + 1, boxes[0]);
+
+            int deepestX = XsdDiagramLayout.MARGIN + LEVELS * XsdDiagramLayout.HORIZONTAL_SPACING;
+            return layout.hitTest(deepestX + XsdDiagramLayout.ELEMENT_WIDTH / 2,
+                    XsdDiagramLayout.MARGIN + XsdDiagramLayout.ELEMENT_HEIGHT / 2);
+        });
+
+        assertNotNull(hit);
+        assertEquals(XsdDiagramLayout.Part.BOX, hit.getPart());
+        assertSame(uses.get(LEVELS).getElement(), hit.getPlacement().getNode().getUse().getElement());
+    }
+}
\ No newline at end of file